@@ -37,10 +37,17 @@ public class Constants {
     public static final String PLUGIN_NAME = "TestComplete";
     public static final String LOG_PREFIX = "TestComplete";
     public static final String REPORTS_DIRECTORY_NAME = "tcreports";
+    public static final String PARSE_CACHE_DIRECTORY_NAME = "tcparsecache";
     public static final String LOGX_FILE_EXTENSION = ".tclogx";
     public static final String HTMLX_FILE_EXTENSION = ".htmlx";
     public static final String MHT_FILE_EXTENSION = ".mht";
     public static final String ERROR_FILE_EXTENSION = ".txt";
+    public static final String REPORT_FILE_EXTENSION = ".xml";
+    public static final String MESSAGES_FILE_EXTENSION = ".messages.txt";
+    public static final String ATTACHMENTS_FILE_EXTENSION = ".attachments.xml";
+    public static final String RESULTS_FILE_EXTENSION = ".results";
+    public static final String REPORT_DETAILS_FILE_EXTENSION = ".report.xml";
+    public static final String SUMMARY_INDEX_FILE_NAME = "summary.xml";
     public static final String ANY_CONSTANT = "any";
     public static final String LEGACY_IDS_FILE_NAME = "legacyIds";
 
@@ -0,0 +1,270 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.smartbear.jenkins.plugins.testcomplete;
+
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.remoting.Callable;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.ComputerListener;
+import hudson.slaves.OfflineCause;
+import hudson.util.LogTaskListener;
+import org.jenkinsci.remoting.RoleChecker;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * What a test step needs to know about a node before launching the tests: the OS, the account
+ * the agent runs under, the installed TestComplete/TestExecute versions and the node clock.
+ * The profile is collected in a single remote call and cached per node until it expires or
+ * the node reconnects, so the steps running on the same node one after another do not ask again.
+ * The cached profile is shown on the node page, where it can also be refreshed, and gives
+ * the node the labels of its installations.
+ */
+public class TcAgentProfile implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // how long a profile is used before the node is asked again, 0 disables the cache
+    public static final long TTL = TimeUnit.MINUTES.toMillis(
+            Math.max(0, Integer.getInteger(TcAgentProfile.class.getName() + ".ttlMinutes", 60)));
+
+    private static final Logger LOGGER = Logger.getLogger(TcAgentProfile.class.getName());
+
+    private static final Map<Computer, TcAgentProfile> PROFILES = new WeakHashMap<>();
+
+    private boolean windows = false;
+    private boolean systemUser = false;
+    private List<TcInstallation> installations = Collections.emptyList();
+    private long nodeTime = 0;
+
+    // difference between the node clock and the controller clock
+    private transient long clockOffset = 0;
+    // when the node has been asked, by the controller clock
+    private transient long probedAt = 0;
+    private transient boolean cached = false;
+
+    private TcAgentProfile() {
+    }
+
+    public boolean isWindows() {
+        return windows;
+    }
+
+    /**
+     * Returns whether the agent runs under the System account.
+     */
+    public boolean isSystemUser() {
+        return systemUser;
+    }
+
+    public List<TcInstallation> getInstallations() {
+        return installations;
+    }
+
+    /**
+     * Returns the current time of the node clock.
+     */
+    long getNodeTime() {
+        return System.currentTimeMillis() + clockOffset;
+    }
+
+    /**
+     * Returns the difference between the node clock and the controller clock in milliseconds.
+     */
+    public long getClockOffset() {
+        return clockOffset;
+    }
+
+    /**
+     * Returns when the node has been asked, by the controller clock.
+     */
+    public long getProbedAt() {
+        return probedAt;
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() - probedAt >= TTL;
+    }
+
+    /**
+     * Returns whether the profile has been taken from the cache.
+     */
+    boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * Returns the profile of the node, the node is asked only if its profile is not cached or has expired.
+     *
+     * @param computer the node, the profile is not cached if it is null
+     * @param refresh if true, the cached profile is replaced with a new one
+     * @return the profile or null if the node could not be asked
+     */
+    static TcAgentProfile get(Computer computer, VirtualChannel channel, TaskListener listener, boolean refresh) {
+        if (computer != null && !refresh) {
+            synchronized (PROFILES) {
+                TcAgentProfile profile = PROFILES.get(computer);
+                if (profile != null && !profile.isExpired()) {
+                    return profile.copy(true);
+                }
+            }
+        }
+
+        TcAgentProfile profile = probe(channel, listener);
+        if (profile != null && computer != null) {
+            TcAgentProfile previous;
+            synchronized (PROFILES) {
+                previous = PROFILES.put(computer, profile);
+            }
+            if (!getLabelNames(previous).equals(getLabelNames(profile))) {
+                TcInstallationLabelFinder.labelsChanged();
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Returns the cached profile of the node, even if it has expired. Returns null if there is none.
+     */
+    static TcAgentProfile getCached(Computer computer) {
+        synchronized (PROFILES) {
+            TcAgentProfile profile = PROFILES.get(computer);
+            return profile != null ? profile.copy(true) : null;
+        }
+    }
+
+    static void invalidate(Computer computer) {
+        TcAgentProfile previous;
+        synchronized (PROFILES) {
+            previous = PROFILES.remove(computer);
+        }
+        if (!getLabelNames(previous).isEmpty()) {
+            TcInstallationLabelFinder.labelsChanged();
+        }
+    }
+
+    private static Set<String> getLabelNames(TcAgentProfile profile) {
+        return profile != null ?
+                TcInstallationLabelFinder.getLabelNames(profile.getInstallations()) : Collections.emptySet();
+    }
+
+    private static TcAgentProfile probe(VirtualChannel channel, TaskListener listener) {
+        try {
+            long started = System.currentTimeMillis();
+            TcAgentProfile profile = channel.call(new ProbeCallable());
+            long finished = System.currentTimeMillis();
+
+            // the node clock is assumed to be read in the middle of the call
+            profile.clockOffset = profile.nodeTime - (started + finished) / 2;
+            profile.probedAt = finished;
+            return profile;
+        } catch (Exception e) {
+            TcLog.error(listener, Messages.TcTestBuilder_RemoteCallingFailed(), e);
+            return null;
+        }
+    }
+
+    private TcAgentProfile copy(boolean cached) {
+        TcAgentProfile result = new TcAgentProfile();
+        result.windows = windows;
+        result.systemUser = systemUser;
+        result.installations = installations;
+        result.nodeTime = nodeTime;
+        result.clockOffset = clockOffset;
+        result.probedAt = probedAt;
+        result.cached = cached;
+        return result;
+    }
+
+    private static class ProbeCallable implements Callable<TcAgentProfile, Exception> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+            // Stub
+        }
+
+        public TcAgentProfile call() {
+            TcAgentProfile profile = new TcAgentProfile();
+
+            String os = System.getProperty("os.name");
+            profile.windows = (os != null && os.toLowerCase().contains("windows"));
+
+            if (profile.windows) {
+                // Trying to check whether we are running on System account
+                String winDir = System.getenv("WINDIR");
+                String userProfile = System.getenv("USERPROFILE");
+                profile.systemUser = winDir != null && userProfile != null && userProfile.startsWith(winDir);
+
+                profile.installations = new ArrayList<>(new TcInstallationsScanner.ScannerCallable().call());
+            }
+
+            profile.nodeTime = System.currentTimeMillis();
+            return profile;
+        }
+
+    }
+
+    /**
+     * Drops the cached profile when the node connects or disconnects, as the node
+     * may have been changed meanwhile. A connected node is asked right away, so the
+     * labels of its installations are known before a job is scheduled.
+     */
+    @Extension
+    public static class CacheInvalidator extends ComputerListener {
+
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            invalidate(c);
+
+            VirtualChannel channel = c.getChannel();
+            if (channel != null) {
+                Computer.threadPoolForRemoting.submit(() ->
+                        get(c, channel, new LogTaskListener(LOGGER, Level.WARNING), true));
+            }
+        }
+
+        @Override
+        public void onOffline(@Nonnull Computer c, OfflineCause cause) {
+            invalidate(c);
+        }
+
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.smartbear.jenkins.plugins.testcomplete;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Action;
+import hudson.model.Computer;
+import hudson.model.TransientComputerActionFactory;
+import hudson.remoting.VirtualChannel;
+import hudson.util.HttpResponses;
+import hudson.util.LogTaskListener;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shows the cached TestComplete/TestExecute installations of a node on the node page
+ * and lets them be collected again.
+ */
+public class TcAgentProfileAction implements Action {
+
+    private static final Logger LOGGER = Logger.getLogger(TcAgentProfileAction.class.getName());
+
+    private final Computer computer;
+
+    TcAgentProfileAction(Computer computer) {
+        this.computer = computer;
+    }
+
+    public String getIconFileName() {
+        return computer.hasPermission(Computer.EXTENDED_READ) ?
+                "/plugin/" + Constants.PLUGIN_NAME + "/images/tc-48x48.png" : null;
+    }
+
+    public String getDisplayName() {
+        return Messages.TcAgentProfileAction_DisplayName();
+    }
+
+    public String getUrlName() {
+        return Constants.PLUGIN_NAME;
+    }
+
+    public Computer getComputer() {
+        return computer;
+    }
+
+    public TcAgentProfile getProfile() {
+        computer.checkPermission(Computer.EXTENDED_READ);
+        return TcAgentProfile.getCached(computer);
+    }
+
+    @SuppressWarnings("unused")
+    public String getProfileAge(TcAgentProfile profile) {
+        return Util.getTimeSpanString(System.currentTimeMillis() - profile.getProbedAt());
+    }
+
+    @SuppressWarnings("unused")
+    public boolean isRefreshAllowed() {
+        return computer.hasPermission(Computer.CONFIGURE) && computer.getChannel() != null;
+    }
+
+    @RequirePOST
+    public HttpResponse doRefresh() {
+        computer.checkPermission(Computer.CONFIGURE);
+
+        VirtualChannel channel = computer.getChannel();
+        if (channel != null) {
+            TcAgentProfile.get(computer, channel, new LogTaskListener(LOGGER, Level.WARNING), true);
+        }
+        return HttpResponses.redirectToDot();
+    }
+
+    @Extension
+    public static class Factory extends TransientComputerActionFactory {
+
+        @Override
+        public Collection<? extends Action> createFor(Computer target) {
+            return Collections.singletonList(new TcAgentProfileAction(target));
+        }
+
+    }
+
+}
@@ -24,6 +24,7 @@
 
 package com.smartbear.jenkins.plugins.testcomplete;
 
+import com.smartbear.jenkins.plugins.testcomplete.parser.AttachmentIndex;
 import hudson.model.Action;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
@@ -31,6 +32,8 @@ import org.kohsuke.stapler.StaplerResponse;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
+import java.util.Collections;
+import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -92,15 +95,20 @@ public class TcDynamicReportAction implements Action{
             ext = Constants.LOGX_FILE_EXTENSION;
         } else if (parts.length == 1 && parts[0].endsWith(Constants.MHT_FILE_EXTENSION)) {
             ext = Constants.MHT_FILE_EXTENSION;
+        } else if (parts.length == 1 && parts[0].endsWith(Constants.MESSAGES_FILE_EXTENSION)) {
+            ext = Constants.MESSAGES_FILE_EXTENSION;
+        } else if (parts.length == 1 && parts[0].endsWith(Constants.REPORT_FILE_EXTENSION) &&
+                !parts[0].endsWith(Constants.REPORT_DETAILS_FILE_EXTENSION) &&
+                !parts[0].equals(Constants.SUMMARY_INDEX_FILE_NAME)) {
+            ext = Constants.REPORT_FILE_EXTENSION;
         }
 
-        String basePath;
+        String basePath = getBasePath();
 
-        if (basePathCache != null) {
-            basePath = basePathCache;
-        } else {
-            basePath = recalculateBasePath(baseReportsPath);
-            basePathCache = basePath;
+        if (Constants.LOGX_FILE_EXTENSION.equals(ext) &&
+                (req.getParameter("entry") != null || req.getParameter("test") != null)) {
+            serveAttachment(req, rsp, basePath, parts[0]);
+            return;
         }
 
         if (ext != null) {
@@ -163,6 +171,84 @@ public class TcDynamicReportAction implements Action{
         }
     }
 
+    /**
+     * Returns the attachments of the report's log listed in its attachment index.
+     */
+    public List<AttachmentIndex.Entry> getAttachments(String id) {
+        File file = getReportFile(id + Constants.ATTACHMENTS_FILE_EXTENSION);
+        if (!file.isFile()) {
+            return Collections.emptyList();
+        }
+
+        try {
+            return AttachmentIndex.read(file);
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    // only the entries listed in the attachment index are served, the log data itself is not
+    private void serveAttachment(StaplerRequest req, StaplerResponse rsp, String basePath, String logFileName)
+            throws IOException {
+
+        String id = logFileName.substring(0, logFileName.length() - Constants.LOGX_FILE_EXTENSION.length());
+        List<AttachmentIndex.Entry> entries = getAttachments(id);
+
+        AttachmentIndex.Entry attachment = null;
+        String entryName = req.getParameter("entry");
+        if (entryName != null) {
+            attachment = AttachmentIndex.findByName(entries, entryName);
+        } else {
+            List<AttachmentIndex.Entry> testAttachments = AttachmentIndex.findByTest(entries, req.getParameter("test"));
+            int number = 0;
+            try {
+                if (req.getParameter("n") != null) {
+                    number = Integer.parseInt(req.getParameter("n"));
+                }
+            } catch (NumberFormatException e) {
+                number = -1;
+            }
+            if (number >= 0 && number < testAttachments.size()) {
+                attachment = testAttachments.get(number);
+            }
+        }
+
+        File logFile = new File(basePath, logFileName);
+        if (attachment == null || !logFile.isFile()) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // the central directory locates the entry, only the entry itself is read
+        try (ZipFile archive = new ZipFile(logFile)) {
+            ZipEntry targetEntry = archive.getEntry(attachment.getName());
+            if (targetEntry == null) {
+                rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+
+            try (InputStream inputStream = archive.getInputStream(targetEntry)) {
+                rsp.serveFile(req, inputStream, targetEntry.getTime(), 0, targetEntry.getSize(), targetEntry.getName());
+            }
+        } catch (ServletException | IOException e) {
+            rsp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Returns the file of the reports directory with the given name.
+     */
+    public File getReportFile(String fileName) {
+        return new File(getBasePath(), fileName);
+    }
+
+    private String getBasePath() {
+        if (basePathCache == null) {
+            basePathCache = recalculateBasePath(baseReportsPath);
+        }
+        return basePathCache;
+    }
+
     private ZipEntry searchEntry(ZipFile archive, String entryName) {
         ZipEntry targetEntry = archive.getEntry(entryName);
         if (targetEntry == null) {
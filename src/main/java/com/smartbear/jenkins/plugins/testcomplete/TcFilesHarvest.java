@@ -0,0 +1,472 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.smartbear.jenkins.plugins.testcomplete;
+
+import hudson.model.Computer;
+import hudson.remoting.Callable;
+import hudson.remoting.FastPipedInputStream;
+import hudson.remoting.FastPipedOutputStream;
+import hudson.remoting.RemoteOutputStream;
+import hudson.remoting.VirtualChannel;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Collects the files left by a test run on the node in a single remote call. The small files
+ * are read into a manifest, the manifest and the logs are streamed back as one tar stream and
+ * the files are deleted on the node afterwards, so the whole harvest costs one round trip instead
+ * of several calls per file.
+ *
+ * The manifest comes first and every log can be used as soon as it has arrived, so the log
+ * can be parsed while the bigger HTML and MHT logs are still being transferred.
+ */
+class TcFilesHarvest implements Callable<TcFilesHarvest.Manifest, IOException> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String MANIFEST_ENTRY_NAME = "manifest.properties";
+
+    /**
+     * Describes the files found on the node. Contains the contents of the small files and
+     * the logs which are being copied.
+     */
+    static class Manifest implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final String EXIT_CODE_KEY = "exitCode";
+        private static final String ERROR_KEY = "error";
+        private static final String TIMEZONE_OFFSET_KEY = "timezoneOffset";
+        private static final String FILE_KEY_PREFIX = "file.";
+
+        private boolean exitCodeFound = false;
+        private String exitCode = null;
+        private String error = null;
+        private int timezoneOffset = 0;
+        private final HashMap<String, Long> files = new HashMap<>();
+
+        /**
+         * Returns whether the node has written the exit code file.
+         */
+        boolean isExitCodeFound() {
+            return exitCodeFound;
+        }
+
+        /**
+         * Returns the first line of the exit code file, null if the file has not been found or is empty.
+         */
+        String getExitCode() {
+            return exitCode;
+        }
+
+        /**
+         * Returns the first line of the error file, null if the file has not been found.
+         */
+        String getError() {
+            return error;
+        }
+
+        /**
+         * Returns the raw offset of the node timezone.
+         */
+        int getTimezoneOffset() {
+            return timezoneOffset;
+        }
+
+        /**
+         * Returns whether the given log has been found on the node and is copied.
+         */
+        boolean hasFile(String name) {
+            return files.containsKey(name);
+        }
+
+        /**
+         * Returns the copied logs and their sizes.
+         */
+        Map<String, Long> getFiles() {
+            return files;
+        }
+
+        // the manifest is sent as plain text, nothing is deserialized from the stream
+        private byte[] toBytes() throws IOException {
+            Properties properties = new Properties();
+            if (exitCodeFound) {
+                properties.setProperty(EXIT_CODE_KEY, exitCode != null ? exitCode : "");
+            }
+            if (error != null) {
+                properties.setProperty(ERROR_KEY, error);
+            }
+            properties.setProperty(TIMEZONE_OFFSET_KEY, Integer.toString(timezoneOffset));
+            for (Map.Entry<String, Long> file : files.entrySet()) {
+                properties.setProperty(FILE_KEY_PREFIX + file.getKey(), Long.toString(file.getValue()));
+            }
+
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            properties.store(result, null);
+            return result.toByteArray();
+        }
+
+        private static Manifest fromBytes(byte[] data) throws IOException {
+            Properties properties = new Properties();
+            properties.load(new ByteArrayInputStream(data));
+
+            Manifest manifest = new Manifest();
+            String exitCode = properties.getProperty(EXIT_CODE_KEY);
+            manifest.exitCodeFound = exitCode != null;
+            manifest.exitCode = exitCode != null && !exitCode.isEmpty() ? exitCode : null;
+            manifest.error = properties.getProperty(ERROR_KEY);
+
+            try {
+                manifest.timezoneOffset = Integer.parseInt(properties.getProperty(TIMEZONE_OFFSET_KEY, "0"));
+                for (String key : properties.stringPropertyNames()) {
+                    if (key.startsWith(FILE_KEY_PREFIX)) {
+                        manifest.files.put(key.substring(FILE_KEY_PREFIX.length()), Long.parseLong(properties.getProperty(key)));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid manifest of the harvested logs", e);
+            }
+            return manifest;
+        }
+
+    }
+
+    /**
+     * A harvest in progress on the controller.
+     */
+    class Transfer {
+
+        private final FastPipedInputStream in;
+        private final Future<Manifest> call;
+        private final Future<?> extraction;
+        private final CompletableFuture<Manifest> manifest = new CompletableFuture<>();
+        private final Map<String, CompletableFuture<Boolean>> arrivals = new HashMap<>();
+
+        private Transfer(VirtualChannel channel) throws IOException {
+            for (String name : artifacts) {
+                arrivals.put(name, new CompletableFuture<>());
+            }
+
+            in = new FastPipedInputStream();
+            out = new RemoteOutputStream(new FastPipedOutputStream(in));
+            extraction = Computer.threadPoolForRemoting.submit(() -> {
+                extract(this);
+                return null;
+            });
+
+            call = channel.callAsync(TcFilesHarvest.this);
+            Computer.threadPoolForRemoting.submit(() -> {
+                try {
+                    call.get();
+                } catch (Exception e) {
+                    // the stream may never be completed, stop waiting for it
+                    abort();
+                }
+            });
+        }
+
+        /**
+         * Waits for the manifest, which is sent before the logs.
+         */
+        Manifest getManifest() throws IOException, InterruptedException {
+            try {
+                return manifest.get();
+            } catch (ExecutionException e) {
+                // the call itself knows better what went wrong
+                finish();
+                throw new IOException(e.getCause());
+            }
+        }
+
+        /**
+         * Waits until the given log has been copied to its target.
+         *
+         * @return false if the log has not been found on the node
+         */
+        boolean awaitFile(String name) throws IOException, InterruptedException {
+            CompletableFuture<Boolean> arrival = arrivals.get(name);
+            if (arrival == null) {
+                return false;
+            }
+
+            try {
+                return arrival.get();
+            } catch (ExecutionException e) {
+                finish();
+                throw new IOException(e.getCause());
+            }
+        }
+
+        /**
+         * Waits until the harvest is over, the files on the node are deleted then.
+         */
+        void finish() throws IOException, InterruptedException {
+            try {
+                try {
+                    call.get();
+                } catch (ExecutionException e) {
+                    // a failed copy on the controller makes the node fail writing, the copy error tells more
+                    if (extraction.isDone()) {
+                        extraction.get();
+                    }
+                    throw e;
+                }
+                extraction.get();
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                call.cancel(true);
+                abort();
+                throw e;
+            }
+        }
+
+        void abort() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Do nothing
+            }
+        }
+
+    }
+
+    private final String directory;
+    private final String exitCodeFileName;
+    private final String errorFileName;
+    private final ArrayList<String> artifacts = new ArrayList<>();
+    private final HashSet<String> keptFiles = new HashSet<>();
+
+    private OutputStream out = null;
+
+    // where the logs are copied to, used on the controller only
+    private final transient Map<String, File> targets = new HashMap<>();
+
+    TcFilesHarvest(String directory, String exitCodeFileName, String errorFileName, boolean keepErrorFile) {
+        this.directory = directory;
+        this.exitCodeFileName = exitCodeFileName;
+        this.errorFileName = errorFileName;
+        if (keepErrorFile) {
+            keptFiles.add(errorFileName);
+        }
+    }
+
+    /**
+     * Adds a log to copy from the node directory to the given file. The logs are sent
+     * in the order they are added.
+     *
+     * @param keep if true, the log is not deleted on the node
+     */
+    void addArtifact(String name, File target, boolean keep) {
+        artifacts.add(name);
+        targets.put(name, target);
+        if (keep) {
+            keptFiles.add(name);
+        }
+    }
+
+    /**
+     * Starts the harvest on the node of the channel, the streamed logs are copied to their
+     * targets in the background.
+     */
+    Transfer start(VirtualChannel channel) throws IOException {
+        return new Transfer(channel);
+    }
+
+    private void extract(Transfer transfer) throws IOException {
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(new BufferedInputStream(transfer.in))) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                if (MANIFEST_ENTRY_NAME.equals(entry.getName()) && !transfer.manifest.isDone()) {
+                    transfer.manifest.complete(Manifest.fromBytes(IOUtils.toByteArray(tar)));
+                    continue;
+                }
+
+                File target = targets.get(entry.getName());
+                if (target == null || !transfer.manifest.isDone()) {
+                    throw new IOException("Unexpected file in the harvested logs: " + entry.getName());
+                }
+                Files.copy(tar, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                transfer.arrivals.get(entry.getName()).complete(true);
+            }
+
+            // the end of the archive may be followed by padding, the writer has to be able to complete
+            IOUtils.skip(transfer.in, Long.MAX_VALUE);
+        } catch (IOException | RuntimeException e) {
+            transfer.manifest.completeExceptionally(e);
+            for (CompletableFuture<Boolean> arrival : transfer.arrivals.values()) {
+                arrival.completeExceptionally(e);
+            }
+            throw e;
+        }
+
+        // the logs which have not been found on the node never arrive
+        IOException incomplete = new IOException("The harvested logs have ended unexpectedly");
+        Manifest manifest = transfer.manifest.getNow(null);
+        transfer.manifest.completeExceptionally(incomplete);
+        for (Map.Entry<String, CompletableFuture<Boolean>> arrival : transfer.arrivals.entrySet()) {
+            if (manifest != null && !manifest.hasFile(arrival.getKey())) {
+                arrival.getValue().complete(false);
+            } else {
+                arrival.getValue().completeExceptionally(incomplete);
+            }
+        }
+    }
+
+    @Override
+    public Manifest call() throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.timezoneOffset = TimeZone.getDefault().getRawOffset();
+
+        File dir = new File(directory);
+        try {
+            File exitCodeFile = new File(dir, exitCodeFileName);
+            if (exitCodeFile.isFile()) {
+                manifest.exitCodeFound = true;
+                String line = readFirstLine(exitCodeFile);
+                manifest.exitCode = line != null && !line.trim().isEmpty() ? line.trim() : null;
+            }
+
+            File errorFile = new File(dir, errorFileName);
+            if (errorFile.isFile()) {
+                String line = readFirstLine(errorFile);
+                manifest.error = line != null ? line.trim() : "";
+            }
+
+            for (String name : artifacts) {
+                File file = new File(dir, name);
+                if (file.isFile()) {
+                    manifest.files.put(name, file.length());
+                }
+            }
+
+            writeArtifacts(dir, manifest);
+        } finally {
+            out.close();
+        }
+
+        // the exit code file is never kept, as before
+        delete(new File(dir, exitCodeFileName));
+        deleteUnlessKept(dir, errorFileName);
+        for (String name : manifest.files.keySet()) {
+            deleteUnlessKept(dir, name);
+        }
+
+        return manifest;
+    }
+
+    private void writeArtifacts(File dir, Manifest manifest) throws IOException {
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new BufferedOutputStream(out))) {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+
+            byte[] manifestData = manifest.toBytes();
+            TarArchiveEntry manifestEntry = new TarArchiveEntry(MANIFEST_ENTRY_NAME);
+            manifestEntry.setSize(manifestData.length);
+            tar.putArchiveEntry(manifestEntry);
+            tar.write(manifestData);
+            tar.closeArchiveEntry();
+            // the controller can go on with the small files while the logs are sent
+            tar.flush();
+
+            for (String name : artifacts) {
+                if (!manifest.hasFile(name)) {
+                    continue;
+                }
+
+                File file = new File(dir, name);
+                long size = manifest.getFiles().get(name);
+                TarArchiveEntry entry = new TarArchiveEntry(name);
+                entry.setSize(size);
+                entry.setModTime(file.lastModified());
+                tar.putArchiveEntry(entry);
+                try (InputStream input = new FileInputStream(file)) {
+                    IOUtils.copyLarge(input, tar, 0, size);
+                }
+                tar.closeArchiveEntry();
+                tar.flush();
+            }
+
+            tar.finish();
+        }
+    }
+
+    private String readFirstLine(File file) {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charset.forName(Constants.DEFAULT_CHARSET_NAME)))) {
+            return br.readLine();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void deleteUnlessKept(File dir, String name) {
+        if (!keptFiles.contains(name)) {
+            delete(new File(dir, name));
+        }
+    }
+
+    private void delete(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            // Do nothing
+        }
+    }
+
+    @Override
+    public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+        // Stub
+    }
+
+}
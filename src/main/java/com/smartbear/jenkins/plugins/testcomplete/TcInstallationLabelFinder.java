@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.smartbear.jenkins.plugins.testcomplete;
+
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.labels.LabelAtom;
+import hudson.model.labels.LabelFinder;
+import jenkins.model.Jenkins;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Adds labels for the TestComplete/TestExecute versions installed on a node, such as
+ * {@code testexecute}, {@code testexecute-15} and {@code testexecute-15.40}, so that jobs
+ * can be restricted to the nodes able to run them. The labels are taken from the cached
+ * profile of the node, which is collected when the node connects.
+ */
+@Extension
+public class TcInstallationLabelFinder extends LabelFinder {
+
+    @Nonnull
+    @Override
+    public Collection<LabelAtom> findLabels(@Nonnull Node node) {
+        Computer computer = node.toComputer();
+        TcAgentProfile profile = computer != null ? TcAgentProfile.getCached(computer) : null;
+        if (profile == null) {
+            return Collections.emptySet();
+        }
+
+        Set<LabelAtom> result = new TreeSet<>();
+        for (String name : getLabelNames(profile.getInstallations())) {
+            result.add(new LabelAtom(name));
+        }
+        return result;
+    }
+
+    static Set<String> getLabelNames(List<TcInstallation> installations) {
+        Set<String> result = new TreeSet<>();
+        for (TcInstallation installation : installations) {
+            String prefix = getLabelPrefix(installation.getType());
+            String[] versionParts = installation.getVersion().split("[.]");
+
+            result.add(prefix);
+            result.add(prefix + "-" + versionParts[0]);
+            if (versionParts.length > 1) {
+                result.add(prefix + "-" + versionParts[0] + "." + versionParts[1]);
+            }
+        }
+        return result;
+    }
+
+    private static String getLabelPrefix(TcInstallation.ExecutorType type) {
+        switch (type) {
+            case TC:
+                return "testcomplete";
+            case TE:
+                return "testexecute";
+            default:
+                return "testexecutelite";
+        }
+    }
+
+    /**
+     * Makes Jenkins recalculate the nodes of the labels after the installations of a node have changed.
+     */
+    static void labelsChanged() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return;
+        }
+
+        for (Label label : jenkins.getLabels()) {
+            label.reset();
+        }
+        jenkins.getQueue().scheduleMaintenance();
+    }
+
+}
@@ -55,7 +55,7 @@ class TcInstallationsScanner implements Serializable {
         this.listener = listener;
     }
 
-    private static class ScannerCallable implements Callable<List<TcInstallation>, Exception> {
+    static class ScannerCallable implements Callable<List<TcInstallation>, Exception> {
 
         private static final long serialVersionUID = 1L;
         private static final String registryKey = "SOFTWARE\\SmartBear\\";
@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.smartbear.jenkins.plugins.testcomplete;
+
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.tasks.junit.SuiteResult;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Publishes the JUnit reports registered by the TestComplete steps of a build when the build
+ * completes. The reports are read on the thread completing the build and added to the test
+ * result action of the build at once, so the result is tallied and saved a single time instead
+ * of once per step. No post-processing slot is taken, so the completion of the build does not
+ * wait for the post-processing of other builds.
+ */
+@Extension
+public class TcJUnitAggregator extends RunListener<Run<?, ?>> {
+
+    @Override
+    public void onCompleted(Run<?, ?> run, @Nonnull TaskListener listener) {
+        TcSummaryAction summaryAction = run.getAction(TcSummaryAction.class);
+        if (summaryAction == null) {
+            return;
+        }
+
+        List<File> reportFiles = summaryAction.takePendingJUnitReports();
+        if (reportFiles.isEmpty()) {
+            return;
+        }
+
+        try {
+            publish(run, listener, reportFiles);
+            run.save();
+        } catch (IOException e) {
+            TcLog.error(listener, Messages.TcJUnitAggregator_UnableToPublish(), e.getMessage());
+        }
+    }
+
+    private void publish(Run<?, ?> run, TaskListener listener, List<File> reportFiles) throws IOException {
+        long started = System.currentTimeMillis();
+
+        List<SuiteResult> suites = new ArrayList<>();
+        for (File reportFile : reportFiles) {
+            List<SuiteResult> reportSuites = readSuites(listener, reportFile);
+            if (reportSuites != null) {
+                suites.addAll(reportSuites);
+            }
+        }
+
+        TcTestResultMerger.get(run).merge(suites, listener, false);
+
+        TcLog.info(listener, Messages.TcJUnitAggregator_Published(), reportFiles.size(),
+                System.currentTimeMillis() - started);
+    }
+
+    private List<SuiteResult> readSuites(TaskListener listener, File reportFile) {
+        try {
+            return TcJUnitResults.readSuites(reportFile);
+        } catch (IOException e) {
+            TcLog.warning(listener, Messages.TcJUnitAggregator_UnableToReadReport(), reportFile.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete;
+
+import com.smartbear.jenkins.plugins.testcomplete.parser.JUnitReport;
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.junit.SuiteResult;
+import hudson.tasks.junit.TestResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fills junit plugin results directly from the parsed log, without writing
+ * and reading back a JUnit XML report.
+ *
+ * <p>The junit plugin has no public API to build a test result from suites which
+ * were not parsed from a report file, so the suites are added through
+ * {@code TestResult.add(SuiteResult)}, and the suite time and timestamp are set through
+ * the {@code SuiteResult.duration} and {@code SuiteResult.timestamp} fields. The minimum
+ * supported junit version is the one managed by the Jenkins 2.361.x BOM this plugin is
+ * built against. When any of these members is missing, {@link #isSupported()} returns
+ * false and the results are read from JUnit XML reports with the public
+ * {@code TestResult.parse} method instead.</p>
+ */
+class TcJUnitResults {
+
+    private static final Logger LOGGER = Logger.getLogger(TcJUnitResults.class.getName());
+
+    private static final Method ADD_SUITE_METHOD = findMethod(TestResult.class, "add", SuiteResult.class);
+    private static final Field SUITE_DURATION_FIELD = findField(SuiteResult.class, "duration");
+    private static final Field SUITE_TIMESTAMP_FIELD = findField(SuiteResult.class, "timestamp");
+
+    private static Method findMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = type.getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+            return method;
+        } catch (NoSuchMethodException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "JUnit results will be read from report files", e);
+            return null;
+        }
+    }
+
+    private static Field findField(Class<?> type, String name) {
+        try {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "JUnit results will be read from report files", e);
+            return null;
+        }
+    }
+
+    static boolean isSupported() {
+        return ADD_SUITE_METHOD != null && SUITE_DURATION_FIELD != null && SUITE_TIMESTAMP_FIELD != null;
+    }
+
+    static void addTo(TestResult testResult, JUnitReport report) throws IOException {
+        for (SuiteResult suiteResult : toSuites(report)) {
+            add(testResult, suiteResult);
+        }
+    }
+
+    static List<SuiteResult> toSuites(JUnitReport report) throws IOException {
+        if (!isSupported()) {
+            throw new IOException("Unable to create test suites from the parsed log");
+        }
+
+        List<SuiteResult> result = new ArrayList<>();
+
+        for (JUnitReport.Suite suite : report.getSuites()) {
+            SuiteResult suiteResult = new SuiteResult(suite.getName(), null, null, null);
+
+            for (JUnitReport.TestCase testCase : suite.getTestCases()) {
+                suiteResult.addCase(new CaseResult(suiteResult,
+                        testCase.getClassName(),
+                        testCase.getName(),
+                        testCase.getFailureMessage(),
+                        testCase.isSkipped() ? "" : null,
+                        testCase.getTime(),
+                        null,
+                        null,
+                        testCase.getFailureMessage() != null ? "" : null));
+            }
+
+            // the cases were added first, as adding a case changes the suite time
+            try {
+                SUITE_DURATION_FIELD.setFloat(suiteResult, suite.getTime());
+                SUITE_TIMESTAMP_FIELD.set(suiteResult, suite.getTimestamp());
+            } catch (IllegalAccessException | IllegalArgumentException e) {
+                throw new IOException(e);
+            }
+
+            result.add(suiteResult);
+        }
+
+        return result;
+    }
+
+    static List<SuiteResult> readSuites(File reportFile) throws IOException {
+        TestResult testResult = new TestResult(true);
+        testResult.parse(reportFile, null);
+        return new ArrayList<>(testResult.getSuites());
+    }
+
+    static void add(TestResult testResult, SuiteResult suiteResult) throws IOException {
+        if (!isSupported()) {
+            throw new IOException("Unable to add test suites to the test result");
+        }
+
+        try {
+            ADD_SUITE_METHOD.invoke(testResult, suiteResult);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IOException(e);
+        }
+    }
+
+}
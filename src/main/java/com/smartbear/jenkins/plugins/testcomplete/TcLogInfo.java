@@ -24,9 +24,11 @@
 
 package com.smartbear.jenkins.plugins.testcomplete;
 
+import com.smartbear.jenkins.plugins.testcomplete.parser.JUnitReport;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 
+import java.io.File;
 import java.io.Serializable;
 import java.text.DateFormat;
 import java.util.Date;
@@ -46,7 +48,11 @@ public class TcLogInfo implements Serializable {
     private final int errorCount;
     private final int warningCount;
 
+    // Kept to read builds created by earlier versions, it is moved to the reports directory when
+    // the build is loaded (see TcReportAction.migrateEmbeddedReport), new reports are written to reportFile
     private String XML = null;
+    private transient File reportFile = null;
+    private transient JUnitReport jUnitReport = null;
 
     public TcLogInfo(long startTime, long stopTime, int testCount, int errorCount, int warningCount) {
         this.startTime = startTime;
@@ -106,11 +112,29 @@ public class TcLogInfo implements Serializable {
         return String.format("%d:%02d:%02d", h,m,s);
     }
 
+    @Deprecated
     public String getXML() {
         return XML;
     }
 
+    @Deprecated
     public void setXML(String XML) {
         this.XML = XML;
     }
+
+    public File getReportFile() {
+        return reportFile;
+    }
+
+    public void setReportFile(File reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    public JUnitReport getJUnitReport() {
+        return jUnitReport;
+    }
+
+    public void setJUnitReport(JUnitReport jUnitReport) {
+        this.jUnitReport = jUnitReport;
+    }
 }
\ No newline at end of file
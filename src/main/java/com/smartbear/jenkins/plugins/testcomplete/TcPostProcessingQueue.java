@@ -0,0 +1,158 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete;
+
+import hudson.model.TaskListener;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of test results which are copied, parsed and published on the controller
+ * at the same time. When many builds finish together, the rest wait for a free slot in the
+ * order of arrival. The steps run on the threads of the builds, so the build log, the
+ * channel and the build abort keep working as before.
+ */
+public class TcPostProcessingQueue {
+
+    public interface Step {
+        void run() throws IOException, InterruptedException;
+    }
+
+    private static class Slots extends Semaphore {
+
+        private static final long serialVersionUID = 4120735512783640135L;
+
+        Slots(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+
+    }
+
+    public static final int DEFAULT_LIMIT = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    private static final TcPostProcessingQueue INSTANCE = new TcPostProcessingQueue(DEFAULT_LIMIT);
+
+    private final Slots slots;
+    private int limit;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    TcPostProcessingQueue(int limit) {
+        this.limit = Math.max(1, limit);
+        this.slots = new Slots(this.limit);
+    }
+
+    public static TcPostProcessingQueue get() {
+        return INSTANCE;
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized void setLimit(int limit) {
+        limit = Math.max(1, limit);
+        if (limit > this.limit) {
+            slots.release(limit - this.limit);
+        } else if (limit < this.limit) {
+            // the running steps finish, the new ones are admitted below the new limit
+            slots.reducePermits(this.limit - limit);
+        }
+        this.limit = limit;
+    }
+
+    public void execute(TaskListener listener, Step step) throws IOException, InterruptedException {
+        if (!slots.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+            long started = System.nanoTime();
+            TcLog.info(listener, Messages.TcTestBuilder_WaitingForPostProcessingSlot(),
+                    waiting.incrementAndGet(), getLimit());
+            try {
+                slots.acquire();
+            } finally {
+                waiting.decrementAndGet();
+            }
+
+            long waitTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            delayed.incrementAndGet();
+            totalWaitTime.addAndGet(waitTime);
+            maxWaitTime.accumulateAndGet(waitTime, Math::max);
+            TcLog.info(listener, Messages.TcTestBuilder_PostProcessingSlotAcquired(), waitTime);
+        }
+
+        running.incrementAndGet();
+        try {
+            step.run();
+        } finally {
+            running.decrementAndGet();
+            completed.incrementAndGet();
+            slots.release();
+        }
+    }
+
+    public int getQueueLength() {
+        return waiting.get();
+    }
+
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * Average wait time of the steps which could not be started immediately, in milliseconds.
+     */
+    public long getAverageWaitTime() {
+        long count = delayed.get();
+        return count > 0 ? totalWaitTime.get() / count : 0;
+    }
+
+    public long getMaxWaitTime() {
+        return maxWaitTime.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Messages.TcTestBuilder_Descriptor_PostProcessingStatus(), getRunningCount(), getLimit(),
+                getQueueLength(), getCompletedCount(), getAverageWaitTime(), getMaxWaitTime());
+    }
+
+}
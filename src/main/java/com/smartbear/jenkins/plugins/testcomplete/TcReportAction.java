@@ -24,6 +24,8 @@
 
 package com.smartbear.jenkins.plugins.testcomplete;
 
+import com.smartbear.jenkins.plugins.testcomplete.parser.AttachmentIndex;
+import com.smartbear.jenkins.plugins.testcomplete.parser.ResultStore;
 import hudson.model.Action;
 import hudson.model.Api;
 import hudson.model.Run;
@@ -31,7 +33,16 @@ import jenkins.model.Jenkins;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * @author Igor Filin
@@ -41,8 +52,14 @@ import java.io.Serializable;
 public class TcReportAction implements Action, Serializable {
 
     private static final long serialVersionUID = 7225479325486123L;
+
+    private static final Logger LOGGER = Logger.getLogger(TcReportAction.class.getName());
+    private static final int MAX_SHOWN_FAILURES = 100;
     
-    private transient final Run<?, ?> build;
+    private transient Run<?, ?> build;
+
+    private transient SoftReference<ResultStore> cachedResults = null;
+    private transient long cachedResultsModified = 0;
 
     private final String id;
 
@@ -52,10 +69,15 @@ public class TcReportAction implements Action, Serializable {
     private String tcLogXFileName = "";
     private String htmlXFileName = "";
     private String mhtFileName = "";
+    private String junitReportFileName = "";
+    private String messagesFileName = "";
+    private String attachmentsFileName = "";
+    private String resultsFileName = "";
 
     private int exitCode = 0;
     private boolean result = true;
     private boolean startFailed = false;
+    private boolean publishJUnitReports = false;
     private String error = "";
 
     private TcLogInfo logInfo = null;
@@ -132,6 +154,38 @@ public class TcReportAction implements Action, Serializable {
         this.mhtFileName = mhtFileName;
     }
 
+    public String getJunitReportFileName() {
+        return junitReportFileName;
+    }
+
+    public void setJunitReportFileName(String junitReportFileName) {
+        this.junitReportFileName = junitReportFileName;
+    }
+
+    public String getMessagesFileName() {
+        return messagesFileName;
+    }
+
+    public void setMessagesFileName(String messagesFileName) {
+        this.messagesFileName = messagesFileName;
+    }
+
+    public String getAttachmentsFileName() {
+        return attachmentsFileName;
+    }
+
+    public void setAttachmentsFileName(String attachmentsFileName) {
+        this.attachmentsFileName = attachmentsFileName;
+    }
+
+    public String getResultsFileName() {
+        return resultsFileName;
+    }
+
+    public void setResultsFileName(String resultsFileName) {
+        this.resultsFileName = resultsFileName;
+    }
+
     @Exported(name="exitCode")
     public int getExitCode() {
         return exitCode;
@@ -159,6 +213,18 @@ public class TcReportAction implements Action, Serializable {
         this.startFailed = startFailed;
     }
 
+    /**
+     * Tells whether the step published the JUnit results of this report.
+     * It is false for the reports of builds made by earlier versions.
+     */
+    public boolean getPublishJUnitReports() {
+        return publishJUnitReports;
+    }
+
+    public void setPublishJUnitReports(boolean publishJUnitReports) {
+        this.publishJUnitReports = publishJUnitReports;
+    }
+
     @Exported(name="error")
     public String getError() {
         return error;
@@ -183,6 +249,10 @@ public class TcReportAction implements Action, Serializable {
 
     public void setParent(TcSummaryAction parent) {
         this.parent = parent;
+        // the build is not stored with the report details
+        if (build == null && parent != null) {
+            build = parent.getBuild();
+        }
     }
 
     @SuppressWarnings("unused")
@@ -201,4 +271,117 @@ public class TcReportAction implements Action, Serializable {
         return (mhtFileName != null && !mhtFileName.isEmpty());
     }
 
+    @SuppressWarnings("unused")
+    public boolean hasOverflowMessages() {
+        return (messagesFileName != null && !messagesFileName.isEmpty());
+    }
+
+    @SuppressWarnings("unused")
+    public boolean hasAttachments() {
+        return (attachmentsFileName != null && !attachmentsFileName.isEmpty());
+    }
+
+    @SuppressWarnings("unused")
+    public List<AttachmentIndex.Entry> getTestAttachments() {
+        List<AttachmentIndex.Entry> result = new ArrayList<>();
+        if (!hasAttachments() || parent == null) {
+            return result;
+        }
+
+        for (AttachmentIndex.Entry entry : parent.getDynamic().getAttachments(id)) {
+            if (entry.getTestName() != null) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    public boolean hasResults() {
+        return (resultsFileName != null && !resultsFileName.isEmpty());
+    }
+
+    /**
+     * Returns the JUnit report file of the report, the report is read from it on demand.
+     */
+    public File getJUnitReportFile() {
+        if (!hasJUnitReport() || parent == null) {
+            return null;
+        }
+
+        File file = parent.getDynamic().getReportFile(junitReportFileName);
+        return file.isFile() ? file : null;
+    }
+
+    /**
+     * Moves the JUnit report embedded into the build record by earlier versions to the
+     * reports directory, so it is no longer loaded with the build.
+     *
+     * @return true if the build record has been changed and has to be saved
+     */
+    boolean migrateEmbeddedReport() {
+        @SuppressWarnings("deprecation")
+        String xml = logInfo != null ? logInfo.getXML() : null;
+        if (xml == null || parent == null) {
+            return false;
+        }
+
+        if (!hasJUnitReport()) {
+            String fileName = id + Constants.REPORT_FILE_EXTENSION;
+            try {
+                Files.write(parent.getDynamic().getReportFile(fileName).toPath(), xml.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to move the JUnit report of " + testName + " out of the build record", e);
+                return false;
+            }
+            junitReportFileName = fileName;
+        }
+
+        logInfo.setXML(null);
+        return true;
+    }
+
+    /**
+     * Reads the per-test results of the report, returns null if they have not been stored.
+     * The results are kept while memory allows and read again if the file has changed.
+     */
+    public ResultStore openResults() throws IOException {
+        if (!hasResults() || parent == null) {
+            return null;
+        }
+
+        File file = parent.getDynamic().getReportFile(resultsFileName);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        long modified = file.lastModified();
+        synchronized (this) {
+            ResultStore results = cachedResults != null ? cachedResults.get() : null;
+            if (results == null || cachedResultsModified != modified) {
+                results = ResultStore.open(file);
+                cachedResults = new SoftReference<>(results);
+                cachedResultsModified = modified;
+            }
+            return results;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public List<ResultStore.Failure> getFailedTests() {
+        try {
+            ResultStore results = openResults();
+            if (results != null) {
+                return results.getFailures(MAX_SHOWN_FAILURES);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the test results of " + testName, e);
+        }
+        return new ArrayList<>();
+    }
+
+    @SuppressWarnings("unused")
+    public boolean hasJUnitReport() {
+        return (junitReportFileName != null && !junitReportFileName.isEmpty());
+    }
+
 }
\ No newline at end of file
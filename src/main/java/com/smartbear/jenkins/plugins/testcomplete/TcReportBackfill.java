@@ -0,0 +1,341 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete;
+
+import com.smartbear.jenkins.plugins.testcomplete.parser.LogParser2;
+import com.smartbear.jenkins.plugins.testcomplete.parser.LogParserCallable;
+import com.smartbear.jenkins.plugins.testcomplete.parser.ParserSettings;
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Job;
+import hudson.model.Project;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.tasks.Builder;
+import hudson.tasks.junit.TestResultAction;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background task which re-parses the archived logs of finished builds and attaches
+ * the JUnit reports and the missing log details to their test reports. This covers
+ * the builds which ran while JUnit reports were not generated.
+ *
+ * The task is disabled by default. Every run is limited by a CPU time budget and
+ * pauses between the parsed logs, so that the controller stays responsive. Only the
+ * freestyle jobs whose TestComplete steps agree on whether warnings fail the tests are
+ * visited, the other jobs do not tell how their reports were generated. The highest
+ * processed build number of every job is stored in the Jenkins root directory, so the
+ * next run continues with the builds which have not been processed yet, including the
+ * ones finished since then.
+ */
+@Extension
+public class TcReportBackfill extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(TcReportBackfill.class.getName());
+
+    public static final boolean ENABLED = Boolean.getBoolean(TcReportBackfill.class.getName() + ".enabled");
+
+    // CPU time a single run may spend on parsing
+    public static final long CPU_BUDGET = TimeUnit.SECONDS.toNanos(
+            Math.max(1, Integer.getInteger(TcReportBackfill.class.getName() + ".cpuBudgetSeconds", 30)));
+
+    // percentage of the wall time spent on parsing while the task is running
+    public static final int DUTY_CYCLE = Math.min(100, Math.max(1,
+            Integer.getInteger(TcReportBackfill.class.getName() + ".dutyCycle", 25)));
+
+    private static final long RECURRENCE_PERIOD = TimeUnit.MINUTES.toMillis(
+            Math.max(1, Integer.getInteger(TcReportBackfill.class.getName() + ".periodMinutes", 15)));
+
+    private static final String PROGRESS_FILE_NAME = TcReportBackfill.class.getName() + ".properties";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    public TcReportBackfill() {
+        super("TestComplete report backfill");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return RECURRENCE_PERIOD;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        if (!ENABLED) {
+            return;
+        }
+
+        Jenkins jenkins = Jenkins.get();
+        File progressFile = new File(jenkins.getRootDir(), PROGRESS_FILE_NAME);
+        Properties progress = loadProgress(progressFile);
+        Budget budget = new Budget();
+
+        for (Job<?, ?> job : jenkins.allItems(Job.class)) {
+            String jobName = job.getFullName();
+            int lastProcessed = getLastProcessedBuildNumber(progress, job);
+            Run<?, ?> lastBuild = job.getLastBuild();
+            if (lastBuild == null || lastBuild.getNumber() <= lastProcessed) {
+                continue;
+            }
+
+            Boolean errorOnWarnings = getErrorOnWarnings(job);
+            if (errorOnWarnings == null) {
+                continue;
+            }
+
+            Run<?, ?> run = job.getNearestBuild(lastProcessed + 1);
+            while (run != null) {
+                if (budget.isExhausted()) {
+                    TcLog.info(listener, Messages.TcReportBackfill_BudgetExhausted(), jobName, run.getNumber());
+                    saveProgress(progressFile, progress);
+                    return;
+                }
+
+                if (run.isBuilding()) {
+                    // the build is not finished yet, it and the later builds are processed by the next run
+                    break;
+                }
+
+                processRun(run, errorOnWarnings, budget, listener);
+
+                progress.setProperty(jobName, Integer.toString(run.getNumber()));
+                saveProgress(progressFile, progress);
+                run = run.getNextBuild();
+            }
+        }
+    }
+
+    private int getLastProcessedBuildNumber(Properties progress, Job<?, ?> job) {
+        String value = progress.getProperty(job.getFullName());
+        if (value != null) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.WARNING, "Invalid backfill progress of " + job.getFullName() + ": " + value);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns whether warnings fail the tests in the reports of the job, or null if the job
+     * does not run TestComplete tests or this cannot be told. The builds are assumed to have
+     * run with the current configuration of the job. The settings of pipeline steps are not
+     * recorded, and the steps of a freestyle job may differ, so their reports are skipped
+     * rather than backfilled with results which differ from the ones the builds reported.
+     */
+    private Boolean getErrorOnWarnings(Job<?, ?> job) {
+        if (!(job instanceof Project)) {
+            return null;
+        }
+
+        Boolean result = null;
+        for (Builder builder : ((Project<?, ?>) job).getBuilders()) {
+            if (!(builder instanceof TcTestBuilder)) {
+                continue;
+            }
+
+            boolean errorOnWarnings = ((TcTestBuilder) builder).isErrorOnWarnings();
+            if (result != null && result != errorOnWarnings) {
+                LOGGER.log(Level.FINE, "Skipping " + job.getFullName() + ", its TestComplete steps treat warnings differently");
+                return null;
+            }
+            result = errorOnWarnings;
+        }
+        return result;
+    }
+
+    private void processRun(Run<?, ?> run, boolean errorOnWarnings, Budget budget, TaskListener listener)
+            throws InterruptedException {
+        TcSummaryAction summary = run.getAction(TcSummaryAction.class);
+        if (summary == null) {
+            return;
+        }
+
+        // the JUnit results of the build have been published, the reports of earlier
+        // versions do not tell which step has published them
+        boolean resultsPublished = run.getAction(TestResultAction.class) != null;
+
+        File reportsDirectory = new File(run.getRootDir(), Constants.REPORTS_DIRECTORY_NAME);
+        // the summary index tells which reports need a backfill, only their details are loaded
+        for (TcReportSummary reportSummary : new ArrayList<>(summary.getSummaries())) {
+            if (!needsBackfill(reportSummary, resultsPublished)) {
+                continue;
+            }
+
+            File log = new File(reportsDirectory, reportSummary.getTcLogXFileName());
+            TcReportAction report = summary.getReport(reportSummary.getId());
+            if (!log.isFile() || report == null) {
+                continue;
+            }
+
+            long started = System.nanoTime();
+            budget.start();
+            try {
+                if (processReport(run, report, log, reportsDirectory, errorOnWarnings, listener)) {
+                    summary.saveReport(report);
+                }
+            } finally {
+                budget.stop();
+            }
+            pause(System.nanoTime() - started);
+        }
+    }
+
+    private boolean needsBackfill(TcReportSummary report, boolean resultsPublished) {
+        if (report.getPublishJUnitReports() || resultsPublished) {
+            return false;
+        }
+
+        String reportFileName = report.getJunitReportFileName();
+        String logFileName = report.getTcLogXFileName();
+        return (reportFileName == null || reportFileName.isEmpty()) &&
+                (logFileName != null && !logFileName.isEmpty());
+    }
+
+    private boolean processReport(Run<?, ?> run, TcReportAction report, File log, File reportsDirectory,
+                                  boolean errorOnWarnings, TaskListener listener) {
+        String reportFileName = report.getId() + Constants.REPORT_FILE_EXTENSION;
+        File reportFile = new File(reportsDirectory, reportFileName);
+
+        // the suite and the project are restored from the test display name
+        String[] nameParts = report.getTestName().split("/", 3);
+        String suite = nameParts[0];
+        String project = nameParts.length > 1 ? nameParts[1] : "";
+
+        try {
+            // the node timezone is not persisted, it only affects the timestamps of the report
+            ParserSettings settings = new ParserSettings(log, suite, project, true, errorOnWarnings);
+            settings.setReportFile(reportFile);
+            File messagesFile = new File(reportsDirectory, report.getId() + Constants.MESSAGES_FILE_EXTENSION);
+            settings.setOverflowFile(messagesFile);
+            File attachmentsFile = new File(reportsDirectory, report.getId() + Constants.ATTACHMENTS_FILE_EXTENSION);
+            settings.setAttachmentIndexFile(attachmentsFile);
+            File resultsFile = new File(reportsDirectory, report.getId() + Constants.RESULTS_FILE_EXTENSION);
+            settings.setResultStoreFile(resultsFile);
+
+            LogParserCallable callable = new LogParserCallable(settings, LogParser2.canParse(log), 0, listener);
+            // logs which were already parsed by their builds are served from the shared cache
+            callable.setCacheDirectory(Utils.getParseCacheDirectory());
+            TcLogInfo logInfo = callable.call();
+            if (logInfo == null || !reportFile.isFile()) {
+                TcLog.warning(listener, Messages.TcReportBackfill_UnableToParse(), log.getName(), run.getFullDisplayName());
+                return false;
+            }
+
+            report.setJunitReportFileName(reportFileName);
+            if (messagesFile.isFile()) {
+                report.setMessagesFileName(messagesFile.getName());
+            }
+            if (attachmentsFile.isFile()) {
+                report.setAttachmentsFileName(attachmentsFile.getName());
+            }
+            if (resultsFile.isFile()) {
+                report.setResultsFileName(resultsFile.getName());
+            }
+            if (report.getLogInfo() == null) {
+                report.setLogInfo(logInfo);
+            }
+            TcLog.info(listener, Messages.TcReportBackfill_ReportAttached(), report.getTestName(), run.getFullDisplayName());
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to process " + log, e);
+            return false;
+        }
+    }
+
+    private void pause(long parseTime) throws InterruptedException {
+        long pause = parseTime * (100 - DUTY_CYCLE) / DUTY_CYCLE;
+        if (pause > 0) {
+            TimeUnit.NANOSECONDS.sleep(pause);
+        }
+    }
+
+    private Properties loadProgress(File file) {
+        Properties progress = new Properties();
+        if (file.isFile()) {
+            try (InputStream input = new FileInputStream(file)) {
+                progress.load(input);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to load the backfill progress from " + file, e);
+            }
+        }
+        return progress;
+    }
+
+    private void saveProgress(File file, Properties progress) throws IOException {
+        File tempFile = new File(file.getPath() + TEMP_FILE_EXTENSION);
+        try (OutputStream output = new FileOutputStream(tempFile)) {
+            progress.store(output, null);
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * CPU time spent on parsing during a single run. The wall time is used if the
+     * JVM does not measure the thread CPU time.
+     */
+    private static class Budget {
+
+        private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        private final boolean cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+
+        private long spent = 0;
+        private long started = 0;
+
+        void start() {
+            started = now();
+        }
+
+        void stop() {
+            spent += now() - started;
+        }
+
+        boolean isExhausted() {
+            return spent >= CPU_BUDGET;
+        }
+
+        private long now() {
+            return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : System.nanoTime();
+        }
+
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete;
+
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.Objects;
+
+/**
+ * Row of the summary index of a build, holds what the summary page and the remote API
+ * show for a report, so the full report details are only loaded when the report page
+ * is opened.
+ */
+@ExportedBean
+public class TcReportSummary {
+
+    private final String id;
+    private final String testName;
+    private final String agent;
+
+    private final int exitCode;
+    private final boolean result;
+    private final boolean startFailed;
+    private final boolean publishJUnitReports;
+    private final String error;
+
+    private final String tcLogXFileName;
+    private final String mhtFileName;
+    private final String junitReportFileName;
+
+    private final TcLogInfo logInfo;
+
+    private transient TcSummaryAction parent = null;
+
+    TcReportSummary(TcReportAction report) {
+        this.id = report.getId();
+        this.testName = report.getTestName();
+        this.agent = report.getAgent();
+        this.exitCode = report.getExitCode();
+        this.result = report.getResult();
+        this.startFailed = report.getStartFailed();
+        this.publishJUnitReports = report.getPublishJUnitReports();
+        this.error = report.getError();
+        this.tcLogXFileName = report.getTcLogXFileName();
+        this.mhtFileName = report.getMhtFileName();
+        this.junitReportFileName = report.getJunitReportFileName();
+        this.logInfo = report.getLogInfo();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    void setParent(TcSummaryAction parent) {
+        this.parent = parent;
+    }
+
+    @Exported(name="testName")
+    public String getTestName() {
+        return testName;
+    }
+
+    @Exported(name="agent")
+    public String getAgent() {
+        return agent;
+    }
+
+    @Exported(name="url")
+    public String getUrl() {
+        if (parent == null) {
+            return null;
+        }
+        return Jenkins.get().getRootUrl() + parent.getBuild().getUrl() + Constants.PLUGIN_NAME + "/reports/" + id;
+    }
+
+    @Exported(name="exitCode")
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    @Exported(name="success")
+    public boolean getResult() {
+        return result;
+    }
+
+    @Exported(name="failedToStart")
+    public boolean getStartFailed() {
+        return startFailed;
+    }
+
+    public boolean getPublishJUnitReports() {
+        return publishJUnitReports;
+    }
+
+    /**
+     * Returns the error of the report, null for the rows written by earlier versions.
+     */
+    @Exported(name="error")
+    public String getError() {
+        return error;
+    }
+
+    public String getTcLogXFileName() {
+        return tcLogXFileName;
+    }
+
+    public String getMhtFileName() {
+        return mhtFileName;
+    }
+
+    public String getJunitReportFileName() {
+        return junitReportFileName;
+    }
+
+    @Exported(name="details", inline=true)
+    public TcLogInfo getLogInfo() {
+        return logInfo;
+    }
+
+    /**
+     * Checks whether both rows show the same, the log info is compared by reference.
+     */
+    boolean isSameAs(TcReportSummary other) {
+        return Objects.equals(id, other.id) && Objects.equals(testName, other.testName) &&
+                Objects.equals(agent, other.agent) && exitCode == other.exitCode && result == other.result &&
+                startFailed == other.startFailed && publishJUnitReports == other.publishJUnitReports &&
+                Objects.equals(error, other.error) &&
+                Objects.equals(tcLogXFileName, other.tcLogXFileName) && Objects.equals(mhtFileName, other.mhtFileName) &&
+                Objects.equals(junitReportFileName, other.junitReportFileName) && logInfo == other.logInfo;
+    }
+
+    @SuppressWarnings("unused")
+    public boolean hasMHTReport() {
+        return (mhtFileName != null && !mhtFileName.isEmpty());
+    }
+
+    @SuppressWarnings("unused")
+    public boolean hasJUnitReport() {
+        return (junitReportFileName != null && !junitReportFileName.isEmpty());
+    }
+
+}
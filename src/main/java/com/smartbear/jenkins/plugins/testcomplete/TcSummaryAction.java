@@ -24,28 +24,47 @@
 
 package com.smartbear.jenkins.plugins.testcomplete;
 
-import hudson.model.Action;
+import hudson.XmlFile;
 import hudson.model.Api;
 import hudson.model.Run;
+import jenkins.model.RunAction2;
+import jenkins.util.Timer;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * @author Igor Filin
  */
 @ExportedBean
-public class TcSummaryAction implements Action {
+public class TcSummaryAction implements RunAction2 {
+
+    private static final Logger LOGGER = Logger.getLogger(TcSummaryAction.class.getName());
+
+    // only the details of the recently opened reports are kept in memory
+    private static final int MAX_LOADED_REPORTS = 10;
 
     private final Run<?, ?> build;
 
-    private LinkedHashMap<String, TcReportAction> reports = new LinkedHashMap<>();
+    // Kept to read builds created by earlier versions, the reports are moved to the reports directory
+    // when they are first accessed. Also holds the reports which could not be written there.
+    private LinkedHashMap<String, TcReportAction> reports = null;
+    private ArrayList<TcReportAction> reportsOrder = null;
 
-    private ArrayList<TcReportAction> reportsOrder = new ArrayList<>();
     private final TcDynamicReportAction dynamic;
 
+    // JUnit reports registered by the steps to be published when the build completes
+    private ArrayList<String> pendingJUnitReports = null;
+
+    // the summary index is loaded on first use, report details only when they are requested
+    private transient List<TcReportSummary> summaries = null;
+    private transient Map<String, TcReportAction> loadedReports = null;
+
     TcSummaryAction(Run<?, ?> build) {
         this.build = build;
         String buildDir = build.getRootDir().getAbsolutePath();
@@ -69,45 +88,321 @@ public class TcSummaryAction implements Action {
         return build;
     }
 
-    public void addReport(TcReportAction report) {
-        if (!reports.containsValue(report)) {
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        // Do nothing
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        // the reports of earlier versions are migrated on first access, not while the builds are loaded
+    }
+
+    /**
+     * Moves the reports kept in the build record by earlier versions to the reports directory.
+     * Called once the summary index has been read, so the index is written once for all of them.
+     */
+    private void migrateLegacyReports() {
+        if (reportsOrder == null || reportsOrder.isEmpty()) {
+            return;
+        }
+
+        List<TcReportAction> legacyReports = reportsOrder;
+        reports = null;
+        reportsOrder = null;
+
+        for (TcReportAction report : legacyReports) {
             report.setParent(this);
-            reports.put(report.getId(), report);
+            report.migrateEmbeddedReport();
+            storeReport(report);
+        }
+        writeSummaries();
+
+        // the build record is saved outside of the lock of this action
+        Timer.get().submit(() -> {
+            try {
+                build.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to save " + build.getFullDisplayName(), e);
+            }
+        });
+    }
+
+    public synchronized void addReport(TcReportAction report) {
+        if (getReportSummary(report.getId()) == null) {
+            report.setParent(this);
+            storeReport(report);
+            writeSummaries();
+        }
+    }
+
+    /**
+     * Writes the changes of a report which has been already added. The summary index
+     * is only rewritten if the row of the report has changed.
+     */
+    public synchronized void saveReport(TcReportAction report) {
+        if (getReportSummary(report.getId()) != null && storeReport(report)) {
+            writeSummaries();
+        }
+    }
+
+    /**
+     * Writes the details of the report and updates its row of the summary index in memory,
+     * the callers write the index once they are done.
+     *
+     * @return true if the row of the report has been added or changed
+     */
+    private boolean storeReport(TcReportAction report) {
+        getLoadedReports().put(report.getId(), report);
+
+        List<TcReportSummary> currentSummaries = getSummaries();
+        TcReportSummary summary = new TcReportSummary(report);
+        summary.setParent(this);
+        int index = indexOf(report.getId());
+        boolean changed = true;
+        if (index >= 0) {
+            changed = !summary.isSameAs(currentSummaries.get(index));
+            currentSummaries.set(index, summary);
+        } else {
+            currentSummaries.add(summary);
+        }
+
+        boolean written = false;
+        try {
+            XmlFile file = getReportDetailsFile(report.getId());
+            file.getFile().getParentFile().mkdirs();
+            file.write(report);
+            written = true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write the details of " + report.getTestName() +
+                    ", they are kept in the build record", e);
+        }
+
+        if (written) {
+            if (reportsOrder != null && reports.remove(report.getId()) != null) {
+                reportsOrder.remove(report);
+            }
+            return changed;
+        }
+
+        if (reportsOrder == null) {
+            reports = new LinkedHashMap<>();
+            reportsOrder = new ArrayList<>();
+        }
+        if (reports.put(report.getId(), report) == null) {
             reportsOrder.add(report);
         }
+        return changed;
     }
 
+    /**
+     * Registers a JUnit report of the reports directory to be published when the build completes.
+     */
+    public synchronized void registerJUnitReport(String fileName) {
+        if (pendingJUnitReports == null) {
+            pendingJUnitReports = new ArrayList<>();
+        }
+        pendingJUnitReports.add(fileName);
+    }
+
+    /**
+     * Returns the registered JUnit report files and clears the registrations.
+     */
+    synchronized List<File> takePendingJUnitReports() {
+        if (pendingJUnitReports == null) {
+            return Collections.emptyList();
+        }
+
+        List<File> result = new ArrayList<>();
+        for (String fileName : pendingJUnitReports) {
+            result.add(dynamic.getReportFile(fileName));
+        }
+        pendingJUnitReports = null;
+        return result;
+    }
+
+    /**
+     * Returns the rows of the summary index in the order the reports have been added.
+     */
     @Exported(name="reports", inline = true)
-    public ArrayList<TcReportAction> getReportsOrder() {
-        return reportsOrder;
+    public synchronized List<TcReportSummary> getSummaries() {
+        if (summaries == null) {
+            summaries = readSummaries();
+            for (TcReportSummary summary : summaries) {
+                summary.setParent(this);
+            }
+            migrateLegacyReports();
+        }
+        return summaries;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<TcReportSummary> readSummaries() {
+        XmlFile file = getSummaryIndexFile();
+        if (file.exists()) {
+            try {
+                return new ArrayList<>((List<TcReportSummary>) file.read());
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Unable to read " + file, e);
+            }
+        }
+
+        // the index is rebuilt from the reports kept in the build record
+        List<TcReportSummary> result = new ArrayList<>();
+        if (reportsOrder != null) {
+            for (TcReportAction report : reportsOrder) {
+                result.add(new TcReportSummary(report));
+            }
+        }
+        return result;
     }
 
-    public HashMap<String, TcReportAction> getReports() {
-        return reports;
+    private void writeSummaries() {
+        XmlFile file = getSummaryIndexFile();
+        try {
+            file.getFile().getParentFile().mkdirs();
+            file.write(new ArrayList<>(getSummaries()));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write " + file, e);
+        }
     }
 
-    @SuppressWarnings("unused")
-    public TcReportAction getNextReport(TcReportAction report) {
-        if (report == null || !reportsOrder.contains(report)) {
-            return null;
+    /**
+     * Returns the report with the given id, its details are loaded on the first request.
+     */
+    public synchronized TcReportAction getReport(String id) {
+        TcReportAction report = getLoadedReports().get(id);
+        if (report != null) {
+            return report;
         }
-        int index = reportsOrder.indexOf(report);
-        if (index + 1 >= reportsOrder.size()) {
+
+        // reading the summary index migrates the reports of earlier versions first
+        if (getReportSummary(id) == null) {
             return null;
         }
-        return reportsOrder.get(index + 1);
+
+        if (reports != null && reports.containsKey(id)) {
+            report = reports.get(id);
+        } else {
+            XmlFile file = getReportDetailsFile(id);
+            try {
+                report = (TcReportAction) file.read();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Unable to read " + file, e);
+                return null;
+            }
+        }
+
+        report.setParent(this);
+        getLoadedReports().put(id, report);
+        return report;
+    }
+
+    /**
+     * Returns a view of the reports by id, it serves the "reports/{id}" URLs.
+     * The details of a report are only loaded when the value of its entry is requested.
+     */
+    public Map<String, TcReportAction> getReports() {
+        return new AbstractMap<String, TcReportAction>() {
+
+            @Override
+            public TcReportAction get(Object id) {
+                return id instanceof String ? getReport((String) id) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object id) {
+                return id instanceof String && getReportSummary((String) id) != null;
+            }
+
+            @Override
+            public Set<Entry<String, TcReportAction>> entrySet() {
+                Set<Entry<String, TcReportAction>> result = new LinkedHashSet<>();
+                for (TcReportSummary summary : new ArrayList<>(getSummaries())) {
+                    result.add(new LazyReportEntry(summary.getId()));
+                }
+                return result;
+            }
+
+        };
+    }
+
+    public synchronized TcReportSummary getReportSummary(String id) {
+        int index = indexOf(id);
+        return index >= 0 ? getSummaries().get(index) : null;
     }
 
     @SuppressWarnings("unused")
-    public TcReportAction getPreviousReport(TcReportAction report) {
-        if (report == null || !reportsOrder.contains(report)) {
+    public synchronized TcReportSummary getNextReport(TcReportAction report) {
+        int index = report != null ? indexOf(report.getId()) : -1;
+        if (index < 0 || index + 1 >= getSummaries().size()) {
             return null;
         }
-        int index = reportsOrder.indexOf(report);
+        return getSummaries().get(index + 1);
+    }
+
+    @SuppressWarnings("unused")
+    public synchronized TcReportSummary getPreviousReport(TcReportAction report) {
+        int index = report != null ? indexOf(report.getId()) : -1;
         if (index <= 0) {
             return null;
         }
-        return reportsOrder.get(index - 1);
+        return getSummaries().get(index - 1);
+    }
+
+    private int indexOf(String id) {
+        List<TcReportSummary> currentSummaries = getSummaries();
+        for (int i = 0; i < currentSummaries.size(); i++) {
+            if (currentSummaries.get(i).getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Map<String, TcReportAction> getLoadedReports() {
+        if (loadedReports == null) {
+            loadedReports = new LinkedHashMap<String, TcReportAction>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TcReportAction> eldest) {
+                    return size() > MAX_LOADED_REPORTS;
+                }
+            };
+        }
+        return loadedReports;
+    }
+
+    private class LazyReportEntry implements Map.Entry<String, TcReportAction> {
+
+        private final String id;
+
+        LazyReportEntry(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getKey() {
+            return id;
+        }
+
+        @Override
+        public TcReportAction getValue() {
+            return getReport(id);
+        }
+
+        @Override
+        public TcReportAction setValue(TcReportAction value) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    private XmlFile getSummaryIndexFile() {
+        return new XmlFile(dynamic.getReportFile(Constants.SUMMARY_INDEX_FILE_NAME));
+    }
+
+    private XmlFile getReportDetailsFile(String id) {
+        return new XmlFile(dynamic.getReportFile(id + Constants.REPORT_DETAILS_FILE_EXTENSION));
     }
 
     public TcDynamicReportAction getDynamic() {
@@ -122,4 +417,4 @@ public class TcSummaryAction implements Action {
         return new Api(this);
     }
 
-}
\ No newline at end of file
+}
@@ -28,9 +28,8 @@ import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
-import com.smartbear.jenkins.plugins.testcomplete.parser.ILogParser;
-import com.smartbear.jenkins.plugins.testcomplete.parser.LogParser;
-import com.smartbear.jenkins.plugins.testcomplete.parser.LogParser2;
+import com.smartbear.jenkins.plugins.testcomplete.parser.LogParserCallable;
+import com.smartbear.jenkins.plugins.testcomplete.parser.ParseResultCache;
 import com.smartbear.jenkins.plugins.testcomplete.parser.ParserSettings;
 import hudson.*;
 import hudson.model.*;
@@ -39,6 +38,7 @@ import hudson.security.ACL;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Builder;
+import hudson.tasks.junit.SuiteResult;
 import hudson.tasks.junit.TestResult;
 import hudson.tasks.junit.TestResultAction;
 import hudson.util.ArgumentListBuilder;
@@ -53,10 +53,10 @@ import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.plaincredentials.StringCredentials;
 import org.kohsuke.stapler.*;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 
 import javax.annotation.Nonnull;
 import java.io.*;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -64,6 +64,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Igor Filin
@@ -91,6 +92,7 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
 
     private static final String DEBUG_FLAG_NAME = "TESTCOMPLETE_PLUGIN_DEBUG";
     private static final String KEEP_LOGS_FLAG_NAME = "TESTCOMPLETE_PLUGIN_KEEP_LOGS";
+    private static final String PARSER_THREADS_VARIABLE_NAME = "TESTCOMPLETE_PLUGIN_PARSER_THREADS";
 
     private static final long serialVersionUID = 5647386534856348764L;
     
@@ -203,6 +205,7 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
 
     private boolean generateMHT;
     private boolean publishJUnitReports;
+    private boolean parseLogsOnAgent;
 
     public enum BuildStepAction {
         NONE,
@@ -275,6 +278,7 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
 
         this.generateMHT = false;
         this.publishJUnitReports = true;
+        this.parseLogsOnAgent = false;
     }
 
     @DataBoundSetter
@@ -385,6 +389,13 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
         return actionOnWarnings;
     }
 
+    /**
+     * Tells whether warnings fail the tests in the JUnit reports of this step.
+     */
+    boolean isErrorOnWarnings() {
+        return BuildStepAction.MAKE_FAILED.name().equals(actionOnWarnings);
+    }
+
     @DataBoundSetter
     public void setActionOnErrors(String actionOnErrors) {
         this.actionOnErrors = actionOnErrors;
@@ -511,6 +522,15 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
         return publishJUnitReports;
     }
 
+    @DataBoundSetter
+    public void setParseLogsOnAgent(boolean parseLogsOnAgent) {
+        this.parseLogsOnAgent = parseLogsOnAgent;
+    }
+
+    public boolean getParseLogsOnAgent() {
+        return parseLogsOnAgent;
+    }
+
     @Override
     public BuildStepMonitor getRequiredMonitorService() {
         return BuildStepMonitor.NONE;
@@ -520,40 +540,58 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
         return ((!StringUtils.isEmpty(getUserName())) || (!StringUtils.isEmpty(getUserPassword().getPlainText()))) && (StringUtils.isEmpty(getCredentialsId()));
     }
 
-    private int fixExitCode(int exitCode, Workspace workspace, TaskListener listener) throws IOException, InterruptedException {
-        BufferedReader br = null;
-        int fixedCode = exitCode;
-
-        try {
-            if (workspace.getSlaveExitCodeFilePath().exists()) {
-                br = new BufferedReader(new InputStreamReader(workspace.getSlaveExitCodeFilePath().read(), Charset.forName(Constants.DEFAULT_CHARSET_NAME)));
+    private int fixExitCode(int exitCode, TcFilesHarvest.Manifest harvest, TaskListener listener) {
+        if (!harvest.isExitCodeFound()) {
+            if (DEBUG) {
+                TcLog.debug(listener, Messages.TcTestBuilder_Debug_ExitCodeFileNotExists());
+            }
+            return exitCode;
+        }
 
-                try {
-                    String exiCodeString = Optional.ofNullable(br.readLine())
-                            .orElseThrow(() -> new NumberFormatException())
-                            .trim();
-                    if (DEBUG) {
-                        TcLog.debug(listener, Messages.TcTestBuilder_Debug_ExitCodeRead(), exiCodeString);
-                    }
-                    fixedCode = Integer.parseInt(exiCodeString);
-                } catch (IOException  | NumberFormatException e) {
-                    if (DEBUG) {
-                        TcLog.debug(listener, Messages.TcTestBuilder_Debug_ExitCodeReadFailed());
-                    }
-                }
-            } else {
-                if (DEBUG) {
-                    TcLog.debug(listener, Messages.TcTestBuilder_Debug_ExitCodeFileNotExists());
-                }
+        String exitCodeString = harvest.getExitCode();
+        if (exitCodeString != null) {
+            if (DEBUG) {
+                TcLog.debug(listener, Messages.TcTestBuilder_Debug_ExitCodeRead(), exitCodeString);
             }
-        } finally {
-            if (br != null) {
-                br.close();
+            try {
+                return Integer.parseInt(exitCodeString);
+            } catch (NumberFormatException e) {
+                // Do nothing
             }
-            workspace.getSlaveExitCodeFilePath().delete();
         }
 
-        return fixedCode;
+        if (DEBUG) {
+            TcLog.debug(listener, Messages.TcTestBuilder_Debug_ExitCodeReadFailed());
+        }
+        return exitCode;
+    }
+
+    private void logInstallations(TaskListener listener, List<TcInstallation> installations) {
+        StringBuilder msgBuilder = new StringBuilder();
+        msgBuilder.append(Messages.TcTestBuilder_FoundedInstallations());
+        for (TcInstallation i : installations) {
+            msgBuilder.append("\n\t").append(i);
+        }
+
+        TcLog.info(listener, msgBuilder.toString());
+    }
+
+    private TcFilesHarvest.Transfer startHarvest(VirtualChannel channel, Workspace workspace) throws IOException {
+        // the agent keeps its copy of the log when it parses the log itself
+        boolean keepLogX = KEEP_LOGS || getParseLogsOnAgent();
+
+        TcFilesHarvest harvest = new TcFilesHarvest(workspace.getSlaveWorkspacePath().getRemote(),
+                workspace.getSlaveExitCodeFilePath().getName(), workspace.getSlaveErrorFilePath().getName(), KEEP_LOGS);
+        harvest.addArtifact(workspace.getSlaveLogXFilePath().getName(),
+                new File(workspace.getMasterLogXFilePath().getRemote()), keepLogX);
+        harvest.addArtifact(workspace.getSlaveHtmlXFilePath().getName(),
+                new File(workspace.getMasterHtmlXFilePath().getRemote()), KEEP_LOGS);
+        if (getGenerateMHT()) {
+            harvest.addArtifact(workspace.getSlaveMHTFilePath().getName(),
+                    new File(workspace.getMasterMHTFilePath().getRemote()), KEEP_LOGS);
+        }
+
+        return harvest.start(channel);
     }
 
     @Override
@@ -596,6 +634,9 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
             // Do nothing
         }
 
+        // read once, so that parsing and publishing agree if the setting is changed meanwhile
+        boolean deferJUnitPublishing = getDescriptor().isDeferJUnitPublishing() && TcJUnitResults.isSupported();
+
         if (DEBUG) {
             TcLog.debug(listener, Messages.TcTestBuilder_Debug_Enabled());
         }
@@ -621,7 +662,13 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
 
         TcLog.info(listener, Messages.TcTestBuilder_TestStartedMessage(), testDisplayName);
 
-        if (!Utils.isWindows(launcher.getChannel(), listener)) {
+        // the node is asked once, the steps which follow on the same node use the cached answer
+        TcAgentProfile agentProfile = TcAgentProfile.get(currentComputer, launcher.getChannel(), listener, false);
+        if (DEBUG && agentProfile != null && agentProfile.isCached()) {
+            TcLog.debug(listener, Messages.TcTestBuilder_Debug_AgentProfileCached());
+        }
+
+        if (agentProfile == null || !agentProfile.isWindows()) {
             TcLog.error(listener, Messages.TcTestBuilder_NotWindowsOS());
             TcLog.info(listener, Messages.TcTestBuilder_MarkingBuildAsFailed());
             run.setResult(Result.FAILURE);
@@ -631,22 +678,30 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
         // Search required TC/TE installation
 
         final TcInstallationsScanner scanner = new TcInstallationsScanner(launcher.getChannel(), listener);
-        List<TcInstallation> installations = scanner.getInstallations();
-
-        StringBuilder msgBuilder = new StringBuilder();
-        msgBuilder.append(Messages.TcTestBuilder_FoundedInstallations());
-        for (TcInstallation i : installations) {
-            msgBuilder.append("\n\t").append(i);
-        }
-
-        TcLog.info(listener, msgBuilder.toString());
+        logInstallations(listener, agentProfile.getInstallations());
 
         if (TcInstallation.ExecutorType.TELite.name().equals(executorType)) {
             TcLog.warning(listener, Messages.TcTestBuilder_TELiteIsDeprecatedWarning());
             setExecutorType(TcInstallation.ExecutorType.TE.name());
         }
 
-        final TcInstallation chosenInstallation = scanner.findInstallation(installations, getExecutorType(), getExecutorVersion());
+        TcInstallation foundInstallation = scanner.findInstallation(agentProfile.getInstallations(), getExecutorType(), getExecutorVersion());
+
+        if (foundInstallation == null && agentProfile.isCached()) {
+            // the installations may have changed since the node has been asked
+            if (DEBUG) {
+                TcLog.debug(listener, Messages.TcTestBuilder_Debug_AgentProfileRefreshed());
+            }
+
+            TcAgentProfile refreshedProfile = TcAgentProfile.get(currentComputer, launcher.getChannel(), listener, true);
+            if (refreshedProfile != null) {
+                agentProfile = refreshedProfile;
+                logInstallations(listener, agentProfile.getInstallations());
+                foundInstallation = scanner.findInstallation(agentProfile.getInstallations(), getExecutorType(), getExecutorVersion());
+            }
+        }
+
+        final TcInstallation chosenInstallation = foundInstallation;
 
         if (chosenInstallation == null) {
             TcLog.error(listener, Messages.TcTestBuilder_InstallationNotFound());
@@ -673,7 +728,7 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
         boolean isJNLPSlave = Optional.ofNullable(filePath)
             .map(fpath -> fpath.toComputer())
             .map(comp -> !comp.isLaunchSupported())
-            .orElseGet(() -> false) && !Utils.IsLaunchedAsSystemUser(launcher.getChannel(), listener);
+            .orElseGet(() -> false) && !agentProfile.isSystemUser();
         
 
         boolean needToUseService = useTCService;
@@ -752,7 +807,8 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
         }
 
         int exitCode = -2;
-        int fixedExitCode = exitCode;
+        // set as soon as the exit code file has arrived, so it is kept if processing the logs fails
+        AtomicInteger fixedExitCode = new AtomicInteger(exitCode);
         boolean result = false;
 
         Proc process = null;
@@ -767,7 +823,7 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
                 }
             }
 
-            long startTime = Utils.getSystemTime(launcher.getChannel(), listener);
+            long startTime = agentProfile.getNodeTime();
             Launcher.ProcStarter processStarter = null;
 
             // need to mask any data
@@ -798,21 +854,38 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
 
             process = null;
 
-            fixedExitCode = fixExitCode(exitCode, workspace, listener);
-            String exitCodeDescription = getExitCodeDescription(fixedExitCode);
+            // the exit code is written to a file, which is collected with the logs in one call to the node
+            int processExitCode = exitCode;
+            fixedExitCode.set(processExitCode);
+            TcPostProcessingQueue.get().execute(listener, () -> {
+                // the logs keep arriving while the files which are already there are processed
+                TcFilesHarvest.Transfer transfer = startHarvest(launcher.getChannel(), workspace);
+                try {
+                    TcFilesHarvest.Manifest harvest = transfer.getManifest();
 
-            TcLog.info(listener, Messages.TcTestBuilder_ExitCodeMessage(),
-                    exitCodeDescription == null ? fixedExitCode : fixedExitCode + " (" + exitCodeDescription + ")");
+                    int harvestedExitCode = fixExitCode(processExitCode, harvest, listener);
+                    fixedExitCode.set(harvestedExitCode);
+                    String exitCodeDescription = getExitCodeDescription(harvestedExitCode);
 
-            if (DEBUG) {
-                TcLog.debug(listener, Messages.TcTestBuilder_Debug_FixedExitCodeMessage(), exitCode, fixedExitCode);
-            }
+                    TcLog.info(listener, Messages.TcTestBuilder_ExitCodeMessage(),
+                            exitCodeDescription == null ? harvestedExitCode : harvestedExitCode + " (" + exitCodeDescription + ")");
+
+                    if (DEBUG) {
+                        TcLog.debug(listener, Messages.TcTestBuilder_Debug_FixedExitCodeMessage(), processExitCode, harvestedExitCode);
+                    }
 
-            processFiles(chosenInstallation, run, launcher.getChannel(), listener, workspace, tcReportAction, startTime);
+                    processFiles(chosenInstallation, run, launcher.getChannel(), listener, workspace, transfer, harvest,
+                            tcReportAction, startTime, deferJUnitPublishing);
+                    transfer.finish();
+                } catch (IOException | InterruptedException | RuntimeException e) {
+                    transfer.abort();
+                    throw e;
+                }
+            });
 
-            if (fixedExitCode == 0) {
+            if (fixedExitCode.get() == 0) {
                 result = true;
-            } else if (fixedExitCode == 1) {
+            } else if (fixedExitCode.get() == 1) {
                 TcLog.warning(listener, Messages.TcTestBuilder_BuildStepHasWarnings());
                 if (actionOnWarnings.equals(BuildStepAction.MAKE_UNSTABLE.name())) {
                     TcLog.info(listener, Messages.TcTestBuilder_MarkingBuildAsUnstable());
@@ -851,15 +924,17 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
                 }
             }
 
-            tcReportAction.setExitCode(fixedExitCode);
+            tcReportAction.setExitCode(fixedExitCode.get());
             tcReportAction.setResult(result);
             String tcLogXFileName = tcReportAction.getTcLogXFileName();
             tcReportAction.setStartFailed(tcLogXFileName == null || tcLogXFileName.isEmpty());
+            tcReportAction.setPublishJUnitReports(getPublishJUnitReports());
 
             TcSummaryAction currentAction = getOrCreateAction(run);
             currentAction.addReport(tcReportAction);
             if (getPublishJUnitReports()) {
-                publishResult(run, listener, workspace, tcReportAction);
+                TcPostProcessingQueue.get().execute(listener,
+                        () -> publishResult(run, listener, workspace, tcReportAction, deferJUnitPublishing));
             }
         }
 
@@ -870,40 +945,29 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
         return run.getAction(TestResultAction.class);
     }
 
-    private void publishResult(Run<?, ?> run, TaskListener listener,
-                               Workspace workspace, TcReportAction tcReportAction) throws InterruptedException {
+    private void publishResult(Run<?, ?> run, TaskListener listener, Workspace workspace,
+                               TcReportAction tcReportAction, boolean deferJUnitPublishing) throws InterruptedException {
 
-        if (tcReportAction.getLogInfo() == null || tcReportAction.getLogInfo().getXML() == null) {
+        TcLogInfo logInfo = tcReportAction.getLogInfo();
+
+        if (logInfo == null || (logInfo.getReportFile() == null && logInfo.getJUnitReport() == null)) {
             TcLog.warning(listener, Messages.TcTestBuilder_UnableToPublishTestData());
             return;
         }
 
-        OutputStream os = null;
-
-        String reportFileName = tcReportAction.getId() + ".xml";
-        FilePath reportFile = new FilePath(workspace.getMasterLogDirectory(), reportFileName);
+        FilePath reportFile = workspace.getMasterReportFilePath();
+        String reportFileName = reportFile.getName();
 
         if (DEBUG) {
             TcLog.debug(listener, Messages.TcTestBuilder_Debug_JUNIT_PathOnMaster(), reportFile.getRemote());
         }
 
         try {
-            os = reportFile.write();
-
-            try {
-                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-                String xml = tcReportAction.getLogInfo().getXML();
-                byteArrayOutputStream.write(xml.getBytes("UTF-8"));
-                byteArrayOutputStream.writeTo(os);
-            } finally {
-                os.close();
-            }
-
             if (DEBUG) {
                 TcLog.debug(listener, Messages.TcTestBuilder_Debug_JUNIT_GeneratedSuccessfully());
             }
 
-            if (KEEP_LOGS) {
+            if (KEEP_LOGS && logInfo.getReportFile() != null) {
                 FilePath slaveJUnitFilePath = new FilePath(workspace.getSlaveWorkspacePath(), reportFileName);
                 slaveJUnitFilePath.copyFrom(reportFile);
 
@@ -912,12 +976,31 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
                 }
             }
 
+            if (deferJUnitPublishing) {
+                // the report stays in the reports directory and is published with the others when the build completes
+                tcReportAction.setJunitReportFileName(reportFileName);
+                TcSummaryAction summaryAction = getOrCreateAction(run);
+                summaryAction.saveReport(tcReportAction);
+                summaryAction.registerJUnitReport(reportFileName);
+                TcLog.info(listener, Messages.TcTestBuilder_JUnitPublishingDeferred());
+                return;
+            }
+
+            if (TcJUnitResults.isSupported()) {
+                // the suites of this step are built outside of any lock, only queueing them is serialized
+                List<SuiteResult> suites = logInfo.getJUnitReport() != null ?
+                        TcJUnitResults.toSuites(logInfo.getJUnitReport()) :
+                        TcJUnitResults.readSuites(logInfo.getReportFile());
+                TcTestResultMerger.get(run).merge(suites, listener, DEBUG);
+                return;
+            }
+
             synchronized (run) {
                 TestResultAction testResultAction = getTestResultAction(run);
 
                 if (testResultAction == null) {
                     TestResult testResult = new hudson.tasks.junit.TestResult(true);
-                    testResult.parse(new File(reportFile.getRemote()), null);
+                    addResults(testResult, logInfo);
                     testResultAction = new TestResultAction(run, testResult, listener);
 
                     if (DEBUG) {
@@ -931,7 +1014,7 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
                     run.addAction(testResultAction);
                 } else {
                     TestResult testResult = testResultAction.getResult();
-                    testResult.parse(new File(reportFile.getRemote()), null);
+                    addResults(testResult, logInfo);
                     testResult.tally();
                     testResultAction.setResult(testResult, listener);
 
@@ -950,23 +1033,30 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
                 TcLog.debug(listener, Messages.TcTestBuilder_ExceptionOccurred(), e.getMessage());
             }
         } finally {
-            if (os != null) {
-                try {
-                    os.close();
-                } catch (IOException e) {
-                    // Do nothing
-                }
+            if (!deferJUnitPublishing) {
+                deleteReportFile(listener, reportFile);
             }
-            try {
-                if (reportFile.exists() && !KEEP_LOGS) {
-                    if (DEBUG) {
-                        TcLog.debug(listener, Messages.TcTestBuilder_Debug_JUNIT_ReportDeleted());
-                    }
-                    reportFile.delete();
+        }
+    }
+
+    private void addResults(TestResult testResult, TcLogInfo logInfo) throws IOException {
+        if (logInfo.getJUnitReport() != null) {
+            TcJUnitResults.addTo(testResult, logInfo.getJUnitReport());
+        } else {
+            testResult.parse(logInfo.getReportFile(), null);
+        }
+    }
+
+    private void deleteReportFile(TaskListener listener, FilePath reportFile) throws InterruptedException {
+        try {
+            if (reportFile.exists() && !KEEP_LOGS) {
+                if (DEBUG) {
+                    TcLog.debug(listener, Messages.TcTestBuilder_Debug_JUNIT_ReportDeleted());
                 }
-            } catch (IOException e) {
-                // Do nothing
+                reportFile.delete();
             }
+        } catch (IOException e) {
+            // Do nothing
         }
     }
 
@@ -1071,55 +1161,88 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
         return resultArgs;
     }
 
-    private void processFiles(TcInstallation installation, Run<?, ?> run, VirtualChannel channel, TaskListener listener, Workspace workspace, TcReportAction testResult, long startTime)
+    private void processFiles(TcInstallation installation, Run<?, ?> run, VirtualChannel channel, TaskListener listener, Workspace workspace,
+                              TcFilesHarvest.Transfer transfer, TcFilesHarvest.Manifest harvest,
+                              TcReportAction testResult, long startTime, boolean deferJUnitPublishing)
             throws IOException, InterruptedException {
 
         // reading error file
 
-        BufferedReader br = null;
-        try {
-            if (workspace.getSlaveErrorFilePath().exists()) {
-                br = new BufferedReader(new InputStreamReader(workspace.getSlaveErrorFilePath().read(), Charset.forName(Constants.DEFAULT_CHARSET_NAME)));
-                String errorString = Optional.ofNullable(br.readLine()).orElseGet(() -> "").trim();
-                TcLog.warning(listener, Messages.TcTestBuilder_ErrorMessage(), errorString);
-                testResult.setError(errorString);
-            }
-        } finally {
-            if (br != null) {
-                br.close();
-            }
-
-            if (!KEEP_LOGS) {
-                workspace.getSlaveErrorFilePath().delete();
-            }
+        if (harvest.getError() != null) {
+            String errorString = harvest.getError();
+            TcLog.warning(listener, Messages.TcTestBuilder_ErrorMessage(), errorString);
+            testResult.setError(errorString);
         }
 
         //copying tclogx file
 
-        if (workspace.getSlaveLogXFilePath().exists()) {
+        if (harvest.hasFile(workspace.getSlaveLogXFilePath().getName())) {
             try {
-                workspace.getSlaveLogXFilePath().copyTo(workspace.getMasterLogXFilePath());
+                // the agent parses its own copy of the log, only the results are sent back
+                boolean parseOnAgent = getParseLogsOnAgent();
+                if (!parseOnAgent) {
+                    // parsing starts as soon as the log has arrived, the other logs are still being copied
+                    transfer.awaitFile(workspace.getSlaveLogXFilePath().getName());
+                }
+
                 String logFileName = workspace.getMasterLogXFilePath().getName();
                 testResult.setTcLogXFileName(logFileName);
                 EnvVars env = run.getEnvironment(listener);
                 String suiteFileName = new FilePath(new File(env.expand(getSuite()))).getBaseName();
-                boolean errorOnWarnings = BuildStepAction.MAKE_FAILED.name().equals(actionOnWarnings);
+                boolean errorOnWarnings = isErrorOnWarnings();
+
+                FilePath logXFilePath = parseOnAgent ? workspace.getSlaveLogXFilePath() : workspace.getMasterLogXFilePath();
+                FilePath reportFilePath = parseOnAgent ? workspace.getSlaveReportFilePath() : workspace.getMasterReportFilePath();
+                FilePath messagesFilePath = parseOnAgent ? workspace.getSlaveMessagesFilePath() : workspace.getMasterMessagesFilePath();
+                FilePath attachmentsFilePath = parseOnAgent ? workspace.getSlaveAttachmentsFilePath() : workspace.getMasterAttachmentsFilePath();
+                FilePath resultsFilePath = parseOnAgent ? workspace.getSlaveResultsFilePath() : workspace.getMasterResultsFilePath();
 
-                ILogParser logParser;
-                ParserSettings parserSettings = new ParserSettings(new File(workspace.getMasterLogXFilePath().getRemote()),
+                ParserSettings parserSettings = new ParserSettings(new File(logXFilePath.getRemote()),
                         suiteFileName, env.expand(getProject()), getPublishJUnitReports(), errorOnWarnings);
+                parserSettings.setParallelism(getLogParserThreads(env));
+                // messages which do not fit into the report are kept next to it
+                parserSettings.setOverflowFile(new File(messagesFilePath.getRemote()));
+                // lets the screenshots of failed tests be served without walking the log
+                parserSettings.setAttachmentIndexFile(new File(attachmentsFilePath.getRemote()));
+                // per-test results readable without loading the report
+                parserSettings.setResultStoreFile(new File(resultsFilePath.getRemote()));
+
+                // results are passed to the junit plugin directly, the report file is only kept on demand
+                // when publishing is deferred, the report file is what the step registers
+                boolean collectResults = !parseOnAgent && TcJUnitResults.isSupported() && !deferJUnitPublishing;
+                parserSettings.setCollectResults(collectResults);
+                if (!collectResults || KEEP_LOGS) {
+                    parserSettings.setReportFile(new File(reportFilePath.getRemote()));
+                }
 
-                int timezoneOffset = Utils.getTimezoneOffset(channel, listener);
+                int timezoneOffset = harvest.getTimezoneOffset();
+
+                LogParserCallable parserCallable = new LogParserCallable(parserSettings,
+                        installation.hasNewLogVersion(), timezoneOffset, listener);
+
+                if (!parseOnAgent) {
+                    parserCallable.setCacheDirectory(Utils.getParseCacheDirectory());
+                }
 
-                if (installation.hasNewLogVersion()) {
-                    logParser = new LogParser2(parserSettings, timezoneOffset);
+                if (parseOnAgent) {
+                    testResult.setLogInfo(parseLogOnAgent(channel, workspace, parserCallable));
                 } else {
-                    logParser = new LogParser(parserSettings, timezoneOffset);
+                    testResult.setLogInfo(parserCallable.call());
                 }
 
-                testResult.setLogInfo(logParser.parse(listener));
+                if (workspace.getMasterMessagesFilePath().exists()) {
+                    testResult.setMessagesFileName(workspace.getMasterMessagesFilePath().getName());
+                }
+                if (workspace.getMasterAttachmentsFilePath().exists()) {
+                    testResult.setAttachmentsFileName(workspace.getMasterAttachmentsFilePath().getName());
+                }
+                if (workspace.getMasterResultsFilePath().exists()) {
+                    testResult.setResultsFileName(workspace.getMasterResultsFilePath().getName());
+                }
             } finally {
-                if (!KEEP_LOGS) {
+                if (!KEEP_LOGS && getParseLogsOnAgent()) {
+                    // the copy for the controller has to be sent before the log is deleted
+                    transfer.awaitFile(workspace.getSlaveLogXFilePath().getName());
                     workspace.getSlaveLogXFilePath().delete();
                 }
             }
@@ -1133,16 +1256,9 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
 
         //copying htmlx file
 
-        if (workspace.getSlaveHtmlXFilePath().exists()) {
-            try {
-                workspace.getSlaveHtmlXFilePath().copyTo(workspace.getMasterHtmlXFilePath());
-                String logFileName = workspace.getMasterHtmlXFilePath().getName();
-                testResult.setHtmlXFileName(logFileName);
-            } finally {
-                if (!KEEP_LOGS) {
-                    workspace.getSlaveHtmlXFilePath().delete();
-                }
-            }
+        if (harvest.hasFile(workspace.getSlaveHtmlXFilePath().getName())) {
+            transfer.awaitFile(workspace.getSlaveHtmlXFilePath().getName());
+            testResult.setHtmlXFileName(workspace.getMasterHtmlXFilePath().getName());
         } else {
             TcLog.warning(listener, Messages.TcTestBuilder_UnableToFindLogFile(),
                     workspace.getSlaveHtmlXFilePath().getName());
@@ -1151,16 +1267,9 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
         //copying mht file
 
         if (getGenerateMHT()) {
-            if (workspace.getSlaveMHTFilePath().exists()) {
-                try {
-                    workspace.getSlaveMHTFilePath().copyTo(workspace.getMasterMHTFilePath());
-                    String logFileName = workspace.getMasterMHTFilePath().getName();
-                    testResult.setMhtFileName(logFileName);
-                } finally {
-                    if (!KEEP_LOGS) {
-                        workspace.getSlaveMHTFilePath().delete();
-                    }
-                }
+            if (harvest.hasFile(workspace.getSlaveMHTFilePath().getName())) {
+                transfer.awaitFile(workspace.getSlaveMHTFilePath().getName());
+                testResult.setMhtFileName(workspace.getMasterMHTFilePath().getName());
             } else {
                 TcLog.warning(listener, Messages.TcTestBuilder_UnableToFindLogFile(),
                         workspace.getSlaveMHTFilePath().getName());
@@ -1168,6 +1277,51 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
         }
     }
 
+    private TcLogInfo parseLogOnAgent(VirtualChannel channel, Workspace workspace, LogParserCallable parserCallable)
+            throws IOException, InterruptedException {
+
+        FilePath slaveReportFilePath = workspace.getSlaveReportFilePath();
+        try {
+            TcLogInfo logInfo = channel.call(parserCallable);
+
+            if (logInfo != null && slaveReportFilePath.exists()) {
+                FilePath masterReportFilePath = workspace.getMasterReportFilePath();
+                slaveReportFilePath.copyTo(masterReportFilePath);
+                logInfo.setReportFile(new File(masterReportFilePath.getRemote()));
+            }
+
+            FilePath slaveMessagesFilePath = workspace.getSlaveMessagesFilePath();
+            if (slaveMessagesFilePath.exists()) {
+                slaveMessagesFilePath.copyTo(workspace.getMasterMessagesFilePath());
+                if (!KEEP_LOGS) {
+                    slaveMessagesFilePath.delete();
+                }
+            }
+
+            FilePath slaveAttachmentsFilePath = workspace.getSlaveAttachmentsFilePath();
+            if (slaveAttachmentsFilePath.exists()) {
+                slaveAttachmentsFilePath.copyTo(workspace.getMasterAttachmentsFilePath());
+                if (!KEEP_LOGS) {
+                    slaveAttachmentsFilePath.delete();
+                }
+            }
+
+            FilePath slaveResultsFilePath = workspace.getSlaveResultsFilePath();
+            if (slaveResultsFilePath.exists()) {
+                slaveResultsFilePath.copyTo(workspace.getMasterResultsFilePath());
+                if (!KEEP_LOGS) {
+                    slaveResultsFilePath.delete();
+                }
+            }
+
+            return logInfo;
+        } finally {
+            if (!KEEP_LOGS && slaveReportFilePath.exists()) {
+                slaveReportFilePath.delete();
+            }
+        }
+    }
+
     private String makeDisplayName(Run<?, ?> run, TaskListener listener) throws IOException, InterruptedException {
         StringBuilder builder = new StringBuilder();
         EnvVars env = run.getEnvironment(listener);
@@ -1250,6 +1404,22 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
         return -1; // infinite
     }
 
+    private int getLogParserThreads(EnvVars env) {
+        int threads = getDescriptor().getLogParserThreads();
+
+        // the node can override the global value
+        String value = env.get(PARSER_THREADS_VARIABLE_NAME);
+        if (value != null) {
+            try {
+                threads = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                // Do nothing
+            }
+        }
+
+        return Math.max(1, threads);
+    }
+
     private void checkParameter(String value, String parameterName, Class<?> targetEnum, String additionalValue) throws InvalidConfigurationException {
         if (value == null) {
             throw new InvalidConfigurationException(String.format(Messages.TcTestBuilder_InvalidParameterValue(), "", parameterName));
@@ -1408,15 +1578,69 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
     @Extension @Symbol("testcompletetest")
     public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
 
+        private int logParserThreads = 1;
+        private int postProcessingSlots = TcPostProcessingQueue.DEFAULT_LIMIT;
+        private boolean deferJUnitPublishing = false;
+
         public DescriptorImpl() {
             super(TcTestBuilder.class);
             load();
+            TcPostProcessingQueue.get().setLimit(postProcessingSlots);
         }
 
         public String getPluginName() {
             return Constants.PLUGIN_NAME;
         }
 
+        public int getLogParserThreads() {
+            return logParserThreads;
+        }
+
+        public void setLogParserThreads(int logParserThreads) {
+            this.logParserThreads = Math.max(1, logParserThreads);
+        }
+
+        public int getPostProcessingSlots() {
+            return postProcessingSlots;
+        }
+
+        public void setPostProcessingSlots(int postProcessingSlots) {
+            this.postProcessingSlots = Math.max(1, postProcessingSlots);
+            TcPostProcessingQueue.get().setLimit(this.postProcessingSlots);
+        }
+
+        public boolean isDeferJUnitPublishing() {
+            return deferJUnitPublishing;
+        }
+
+        public void setDeferJUnitPublishing(boolean deferJUnitPublishing) {
+            this.deferJUnitPublishing = deferJUnitPublishing;
+        }
+
+        @SuppressWarnings("unused")
+        public String getPostProcessingStatus() {
+            return TcPostProcessingQueue.get().toString();
+        }
+
+        @RequirePOST
+        public FormValidation doClearParseCache() {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+
+            try {
+                new ParseResultCache(Utils.getParseCacheDirectory()).clear();
+                return FormValidation.ok(Messages.TcTestBuilder_ParseCacheCleared());
+            } catch (IOException e) {
+                return FormValidation.error(e, Messages.TcTestBuilder_UnableToClearParseCache());
+            }
+        }
+
+        @Override
+        public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+            req.bindJSON(this, json);
+            save();
+            return true;
+        }
+
         @Override
         public Builder newInstance(StaplerRequest req, @Nonnull JSONObject formData) throws FormException {
             TcTestBuilder builder = (TcTestBuilder)super.newInstance(req, formData);
@@ -1476,6 +1700,21 @@ public class TcTestBuilder extends Builder implements Serializable, SimpleBuildS
             }
         }
 
+        public FormValidation doCheckLogParserThreads(@QueryParameter String value) {
+            try {
+                if (Integer.parseInt(value) > 0) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException e) {
+                // Do nothing
+            }
+            return FormValidation.error(Messages.TcTestBuilder_Descriptor_IsNotPositiveNumber());
+        }
+
+        public FormValidation doCheckPostProcessingSlots(@QueryParameter String value) {
+            return doCheckLogParserThreads(value);
+        }
+
         public ListBoxModel doFillExecutorTypeItems() {
             ListBoxModel model = new ListBoxModel();
             model.add(Messages.TcTestBuilder_Descriptor_AnyTagText(), Constants.ANY_CONSTANT);
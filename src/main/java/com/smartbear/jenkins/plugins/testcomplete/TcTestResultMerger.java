@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete;
+
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.tasks.junit.SuiteResult;
+import hudson.tasks.junit.TestResult;
+import hudson.tasks.junit.TestResultAction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Merges the JUnit results of TestComplete steps into the test result action of a run.
+ * Each step builds its own suites outside of any lock and queues them. One step at a
+ * time drains the queue, adds all queued suites and tallies and saves the result once,
+ * so the results of steps finishing together are published together.
+ *
+ * Only the queueing takes constant time. Tallying and saving the result walk every
+ * suite added so far, so when steps finish one after another each of them still pays
+ * for all the results of the run, under the lock of the run. The junit plugin rebuilds
+ * its package and class results in {@code TestResult.tally()}, there is no way to add
+ * the counts of new suites to the existing totals without reimplementing it.
+ */
+class TcTestResultMerger {
+
+    private static final Map<Run<?, ?>, TcTestResultMerger> MERGERS = new WeakHashMap<>();
+
+    private final Run<?, ?> run;
+    private final Queue<List<SuiteResult>> pending = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock publishLock = new ReentrantLock();
+
+    private TcTestResultMerger(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    static TcTestResultMerger get(Run<?, ?> run) {
+        synchronized (MERGERS) {
+            return MERGERS.computeIfAbsent(run, TcTestResultMerger::new);
+        }
+    }
+
+    void merge(List<SuiteResult> suites, TaskListener listener, boolean debug) throws IOException {
+        pending.add(suites);
+
+        // the suites are published either here or by the step publishing at the moment,
+        // which checks the queue again after releasing the lock
+        while (!pending.isEmpty() && publishLock.tryLock()) {
+            try {
+                publishPending(listener, debug);
+            } finally {
+                publishLock.unlock();
+            }
+        }
+    }
+
+    private void publishPending(TaskListener listener, boolean debug) throws IOException {
+        List<SuiteResult> suites = new ArrayList<>();
+        List<SuiteResult> next;
+        while ((next = pending.poll()) != null) {
+            suites.addAll(next);
+        }
+
+        if (suites.isEmpty()) {
+            return;
+        }
+
+        // other publishers of the run, such as the junit plugin itself, synchronize on the run
+        synchronized (run) {
+            TestResultAction testResultAction = run.getAction(TestResultAction.class);
+
+            if (testResultAction == null) {
+                TestResult testResult = new TestResult(true);
+                addSuites(testResult, suites);
+                testResult.tally();
+                testResultAction = new TestResultAction(run, testResult, listener);
+                run.addAction(testResultAction);
+
+                if (debug) {
+                    TcLog.debug(listener, Messages.TcTestBuilder_Debug_JUNIT_ResultCreated() + ' ' +
+                            String.format(Messages.TcTestBuilder_Debug_JUNIT_ResultInfo(),
+                                    testResultAction.getFailCount(),
+                                    testResultAction.getSkipCount(),
+                                    testResultAction.getTotalCount()));
+                }
+            } else {
+                TestResult testResult = testResultAction.getResult();
+                addSuites(testResult, suites);
+                testResult.tally();
+                testResultAction.setResult(testResult, listener);
+
+                if (debug) {
+                    TcLog.debug(listener, Messages.TcTestBuilder_Debug_JUNIT_ResultAppended() + ' ' +
+                            String.format(Messages.TcTestBuilder_Debug_JUNIT_ResultInfo(),
+                                    testResultAction.getFailCount(),
+                                    testResultAction.getSkipCount(),
+                                    testResultAction.getTotalCount()));
+                }
+            }
+        }
+    }
+
+    private static void addSuites(TestResult testResult, List<SuiteResult> suites) throws IOException {
+        for (SuiteResult suite : suites) {
+            TcJUnitResults.add(testResult, suite);
+        }
+    }
+
+}
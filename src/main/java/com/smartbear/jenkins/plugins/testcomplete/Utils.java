@@ -27,14 +27,12 @@ package com.smartbear.jenkins.plugins.testcomplete;
 import hudson.PluginWrapper;
 import hudson.model.Computer;
 import hudson.model.TaskListener;
-import hudson.remoting.Callable;
-import hudson.remoting.VirtualChannel;
 import jenkins.model.Jenkins;
-import org.jenkinsci.remoting.RoleChecker;
 
 import javax.crypto.Cipher;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
+import java.io.File;
 import java.lang.ref.WeakReference;
 import java.security.Key;
 import java.security.KeyFactory;
@@ -68,113 +66,6 @@ public class Utils {
     private Utils() {
     }
 
-    static boolean isWindows(VirtualChannel channel, TaskListener listener) {
-        try {
-            return channel.call(new Callable<Boolean, Exception>() {
-
-                private static final long serialVersionUID = -6109926297806624006L;
-
-                @Override
-                public void checkRoles(RoleChecker roleChecker) throws SecurityException {
-                    // Stub
-                }
-
-                public Boolean call() {
-                    String os = System.getProperty("os.name");
-                    if (os != null) {
-                        os = os.toLowerCase();
-                    }
-                    return (os != null && os.contains("windows"));
-                }
-
-            });
-        } catch (Exception e) {
-            TcLog.error(listener, Messages.TcTestBuilder_RemoteCallingFailed(), e);
-            return false;
-        }
-    }
-
-    static boolean IsLaunchedAsSystemUser(VirtualChannel channel, final TaskListener listener) {
-        try {
-            return channel.call(new Callable<Boolean, Exception>() {
-
-                private static final long serialVersionUID = -7887444820720775808L;
-
-                @Override
-                public void checkRoles(RoleChecker roleChecker) throws SecurityException {
-                    // Stub
-                }
-
-                public Boolean call() {
-
-                    // Trying to check whether we are running on System account
-
-                    String winDir = System.getenv("WINDIR");
-                    if (winDir == null) {
-                        return false;
-                    }
-
-                    String userProfile = System.getenv("USERPROFILE");
-                    if (userProfile == null) {
-                        return false;
-                    }
-
-                    return userProfile.startsWith(winDir);
-                }
-
-            });
-        } catch (Exception e) {
-            TcLog.error(listener, Messages.TcTestBuilder_RemoteCallingFailed(), e);
-            return false;
-        }
-    }
-
-    static long getSystemTime(VirtualChannel channel, TaskListener listener) {
-        try {
-            return channel.call(new Callable<Long, Exception>() {
-
-                private static final long serialVersionUID = -8337586169108934130L;
-
-                @Override
-                public void checkRoles(RoleChecker roleChecker) throws SecurityException {
-                    // Stub
-                }
-
-                public Long call() {
-                    return System.currentTimeMillis();
-                }
-
-            });
-        } catch (Exception e) {
-            TcLog.error(listener, Messages.TcTestBuilder_RemoteCallingFailed(), e);
-            return 0;
-        }
-    }
-
-    static int getTimezoneOffset(VirtualChannel channel, TaskListener listener) {
-        try {
-            return channel.call(new Callable<Integer, Exception>() {
-
-                 private static final long serialVersionUID = 1585057738074873637L;
-
-                @Override
-                public void checkRoles(RoleChecker roleChecker) throws SecurityException {
-                    // Stub
-                }
-
-                public Integer call() {
-                    Calendar now = Calendar.getInstance();
-                    TimeZone timeZone = now.getTimeZone();
-                    return timeZone.getRawOffset();
-                }
-
-            });
-        } catch (Exception e) {
-            TcLog.error(listener, Messages.TcTestBuilder_RemoteCallingFailed(), e);
-            return 0;
-        }
-    }
-
     public static long safeConvertDate(String oleDate) {
         double dateToConvert = 0f;
         try {
@@ -251,6 +142,10 @@ public class Utils {
         return reversedData;
     }
 
+    public static File getParseCacheDirectory() {
+        return new File(Jenkins.get().getRootDir(), Constants.PARSE_CACHE_DIRECTORY_NAME);
+    }
+
     public static String getPluginVersionOrNull() {
         Jenkins jenkins = Jenkins.getInstanceOrNull();
         if (jenkins == null) {
@@ -47,6 +47,14 @@ public class Workspace {
     private final FilePath masterLogDirectory;
     private final FilePath slaveMHTFilePath;
     private final FilePath masterMHTFilePath;
+    private final FilePath slaveReportFilePath;
+    private final FilePath masterReportFilePath;
+    private final FilePath slaveMessagesFilePath;
+    private final FilePath masterMessagesFilePath;
+    private final FilePath slaveAttachmentsFilePath;
+    private final FilePath masterAttachmentsFilePath;
+    private final FilePath slaveResultsFilePath;
+    private final FilePath masterResultsFilePath;
 
     public Workspace(Run<?, ?> run, FilePath filePath) throws IOException, InterruptedException {
 
@@ -57,16 +65,28 @@ public class Workspace {
         String logXName = this.logId + Constants.LOGX_FILE_EXTENSION;
         String htmlXName = this.logId + Constants.HTMLX_FILE_EXTENSION;
         String mhtName = this.logId + Constants.MHT_FILE_EXTENSION;
+        String reportName = this.logId + Constants.REPORT_FILE_EXTENSION;
+        String messagesName = this.logId + Constants.MESSAGES_FILE_EXTENSION;
+        String attachmentsName = this.logId + Constants.ATTACHMENTS_FILE_EXTENSION;
+        String resultsName = this.logId + Constants.RESULTS_FILE_EXTENSION;
 
         this.slaveLogXFilePath = new FilePath(slaveWorkspacePath, logXName);
         this.slaveHtmlXFilePath = new FilePath(slaveWorkspacePath, htmlXName);
         this.slaveMHTFilePath = new FilePath(slaveWorkspacePath, mhtName);
+        this.slaveReportFilePath = new FilePath(slaveWorkspacePath, reportName);
+        this.slaveMessagesFilePath = new FilePath(slaveWorkspacePath, messagesName);
+        this.slaveAttachmentsFilePath = new FilePath(slaveWorkspacePath, attachmentsName);
+        this.slaveResultsFilePath = new FilePath(slaveWorkspacePath, resultsName);
 
         this.masterLogDirectory = getMasterLogDirectory(run);
 
         this.masterLogXFilePath = new FilePath(masterLogDirectory, logXName);
         this.masterHtmlXFilePath = new FilePath(masterLogDirectory, htmlXName);
         this.masterMHTFilePath = new FilePath(masterLogDirectory, mhtName);
+        this.masterReportFilePath = new FilePath(masterLogDirectory, reportName);
+        this.masterMessagesFilePath = new FilePath(masterLogDirectory, messagesName);
+        this.masterAttachmentsFilePath = new FilePath(masterLogDirectory, attachmentsName);
+        this.masterResultsFilePath = new FilePath(masterLogDirectory, resultsName);
 
         this.slaveErrorFilePath = new FilePath(slaveWorkspacePath, this.logId + Constants.ERROR_FILE_EXTENSION);
         this.slaveExitCodeFilePath = new FilePath(slaveWorkspacePath, this.logId + "_exitcode" + Constants.ERROR_FILE_EXTENSION);
@@ -130,6 +150,38 @@ public class Workspace {
         return masterMHTFilePath;
     }
 
+    FilePath getSlaveReportFilePath() {
+        return slaveReportFilePath;
+    }
+
+    FilePath getMasterReportFilePath() {
+        return masterReportFilePath;
+    }
+
+    FilePath getSlaveMessagesFilePath() {
+        return slaveMessagesFilePath;
+    }
+
+    FilePath getMasterMessagesFilePath() {
+        return masterMessagesFilePath;
+    }
+
+    FilePath getSlaveAttachmentsFilePath() {
+        return slaveAttachmentsFilePath;
+    }
+
+    FilePath getMasterAttachmentsFilePath() {
+        return masterAttachmentsFilePath;
+    }
+
+    FilePath getSlaveResultsFilePath() {
+        return slaveResultsFilePath;
+    }
+
+    FilePath getMasterResultsFilePath() {
+        return masterResultsFilePath;
+    }
+
     FilePath getMasterLogDirectory() {
         return masterLogDirectory;
     }
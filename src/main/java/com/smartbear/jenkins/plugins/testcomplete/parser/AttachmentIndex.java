@@ -0,0 +1,196 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index of the attachments of a log archive, such as screenshots and files, written next to
+ * the report during the log walk. It lets a single attachment, for example the screenshot of
+ * a failed test, be served with one entry read instead of a walk of the whole log.
+ */
+public class AttachmentIndex implements ILogEventListener {
+
+    public static class Entry {
+
+        private final String testName;
+        private final String name;
+        private final long size;
+
+        Entry(String testName, String name, long size) {
+            this.testName = testName;
+            this.name = name;
+            this.size = size;
+        }
+
+        /**
+         * Returns the name of the test the attachment is linked to, or null for the whole log.
+         */
+        public String getTestName() {
+            return testName;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+    }
+
+    private final File file;
+    private final List<Entry> entries = new ArrayList<>();
+
+    public AttachmentIndex(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void startReport() {
+        entries.clear();
+    }
+
+    @Override
+    public void addAttachment(String testName, String entryName, long size) {
+        entries.add(new Entry(testName, entryName, size));
+    }
+
+    @Override
+    public void endReport() throws XMLStreamException {
+        try {
+            write(file, entries);
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    private static void write(File file, List<Entry> entries) throws IOException, XMLStreamException {
+        boolean written = false;
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(os, LogStreamUtils.REPORT_ENCODING);
+            try {
+                writer.writeStartDocument("utf-8", "1.0");
+                writer.writeStartElement("attachments");
+                for (Entry entry : entries) {
+                    writer.writeStartElement("attachment");
+                    if (entry.testName != null) {
+                        writer.writeAttribute("test", entry.testName);
+                    }
+                    writer.writeAttribute("name", entry.name);
+                    writer.writeAttribute("size", Long.toString(entry.size));
+                    writer.writeEndElement(); //attachment
+                }
+                writer.writeEndElement(); //attachments
+                writer.writeEndDocument();
+                writer.flush();
+            } finally {
+                LogStreamUtils.closeQuietly(writer);
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    /**
+     * Reads the index written during the log walk.
+     */
+    public static List<Entry> read(File file) throws IOException {
+        List<Entry> result = new ArrayList<>();
+
+        XMLStreamReader reader = null;
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            reader = LogStreamUtils.createInputFactory().createXMLStreamReader(stream);
+
+            if (!LogStreamUtils.nextChildElement(reader) || !"attachments".equals(reader.getLocalName())) {
+                throw new ParsingException("Unexpected attachment index format");
+            }
+
+            while (LogStreamUtils.nextChildElement(reader)) {
+                if ("attachment".equals(reader.getLocalName())) {
+                    long size;
+                    try {
+                        size = Long.parseLong(LogStreamUtils.getAttribute(reader, "size"));
+                    } catch (NumberFormatException e) {
+                        size = -1;
+                    }
+                    result.add(new Entry(LogStreamUtils.getAttribute(reader, "test"),
+                            LogStreamUtils.getAttribute(reader, "name"), size));
+                }
+                LogStreamUtils.skipElement(reader);
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            LogStreamUtils.closeQuietly(reader);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the attachment with the given entry name, or null if it is not in the index.
+     */
+    public static Entry findByName(List<Entry> entries, String name) {
+        for (Entry entry : entries) {
+            if (name.equals(entry.name)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the attachments linked to the given test, in the order of the test messages.
+     */
+    public static List<Entry> findByTest(List<Entry> entries, String testName) {
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (testName.equals(entry.testName)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.List;
+
+/**
+ * Passes the events of a single log walk to several listeners at once.
+ */
+class CompositeLogEventListener implements ILogEventListener {
+
+    private final List<ILogEventListener> listeners;
+
+    CompositeLogEventListener(List<ILogEventListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    @Override
+    public void startReport() throws XMLStreamException {
+        for (ILogEventListener listener : listeners) {
+            listener.startReport();
+        }
+    }
+
+    @Override
+    public void startSuite(String name, float time, String failures, String tests, String timestamp) throws XMLStreamException {
+        for (ILogEventListener listener : listeners) {
+            listener.startSuite(name, time, failures, tests, timestamp);
+        }
+    }
+
+    @Override
+    public void addFailureMessage(String testName, String message) throws XMLStreamException {
+        for (ILogEventListener listener : listeners) {
+            listener.addFailureMessage(testName, message);
+        }
+    }
+
+    @Override
+    public void addTestCase(String name, String className, float time, boolean skipped, String failureMessage) throws XMLStreamException {
+        for (ILogEventListener listener : listeners) {
+            listener.addTestCase(name, className, time, skipped, failureMessage);
+        }
+    }
+
+    @Override
+    public void endSuite() throws XMLStreamException {
+        for (ILogEventListener listener : listeners) {
+            listener.endSuite();
+        }
+    }
+
+    @Override
+    public void addAttachment(String testName, String entryName, long size) throws XMLStreamException {
+        for (ILogEventListener listener : listeners) {
+            listener.addAttachment(testName, entryName, size);
+        }
+    }
+
+    @Override
+    public void endReport() throws XMLStreamException {
+        for (ILogEventListener listener : listeners) {
+            listener.endReport();
+        }
+    }
+
+}
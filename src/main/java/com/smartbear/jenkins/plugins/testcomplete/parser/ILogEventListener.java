@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Receives the contents of a log during a single walk of the archive, so several
+ * consumers (the JUnit report, statistics, indexes) are served by one parse.
+ * Optional values which are not known to the parser are passed as null.
+ *
+ * The events come in the following order: {@link #startReport}, then for every suite
+ * {@link #startSuite}, the failure messages, the attachments and the test case of every
+ * test and {@link #endSuite}, then the attachments not linked to any test and
+ * {@link #endReport}. A parser may start the walk over again, so the data collected
+ * before {@link #startReport} is discarded.
+ */
+public interface ILogEventListener {
+
+    default void startReport() throws XMLStreamException {
+    }
+
+    default void startSuite(String name, float time, String failures, String tests, String timestamp) throws XMLStreamException {
+    }
+
+    /**
+     * Called for each message which fails the test, before {@link #addTestCase} of the test.
+     * Only the messages which fit into the message limits of the parser settings are passed.
+     */
+    default void addFailureMessage(String testName, String message) throws XMLStreamException {
+    }
+
+    default void addTestCase(String name, String className, float time, boolean skipped, String failureMessage) throws XMLStreamException {
+    }
+
+    default void endSuite() throws XMLStreamException {
+    }
+
+    /**
+     * Called for each archive entry which is not a part of the log data, such as pictures and files.
+     * The test name is null for the entries which are not referenced by the messages of a failed test.
+     */
+    default void addAttachment(String testName, String entryName, long size) throws XMLStreamException {
+    }
+
+    default void endReport() throws XMLStreamException {
+    }
+
+}
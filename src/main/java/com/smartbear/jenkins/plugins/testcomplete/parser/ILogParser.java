@@ -32,6 +32,12 @@ import hudson.model.TaskListener;
  */
 public interface ILogParser {
 
+    /**
+     * Registers an additional consumer of the log contents. All listeners
+     * are served by the same walk of the archive.
+     */
+    void addEventListener(ILogEventListener listener);
+
     TcLogInfo parse(TaskListener listener);
 
 }
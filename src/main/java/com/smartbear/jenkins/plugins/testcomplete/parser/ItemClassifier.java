@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import org.w3c.dom.Node;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers which log items are project items and test items. The classification
+ * is keyed by the item moniker, so every item is classified once per root file.
+ */
+class ItemClassifier {
+
+    private final LogParseSession session;
+    private final MonikerIndex index;
+
+    private final Map<String, Boolean> projectItems = new HashMap<>();
+    private final Map<String, Boolean> testItems = new HashMap<>();
+
+    ItemClassifier(LogParseSession session, MonikerIndex index) {
+        this.session = session;
+        this.index = index;
+    }
+
+    public MonikerIndex getIndex() {
+        return index;
+    }
+
+    public boolean isProjectItem(Node node) {
+        String moniker = index.getProperty(node, "moniker");
+        if (moniker == null) {
+            return classifyProjectItem(node);
+        }
+
+        Boolean result = projectItems.get(moniker);
+        if (result == null) {
+            result = classifyProjectItem(node);
+            projectItems.put(moniker, result);
+        }
+        return result;
+    }
+
+    public boolean isTestItem(Node node) {
+        String moniker = index.getProperty(node, "moniker");
+        Boolean result = moniker != null ? testItems.get(moniker) : null;
+
+        if (result == null) {
+            result = false;
+            for (Node subItem : index.getChildNodes(node)) {
+                if (!isProjectItem(subItem)) {
+                    result = true;
+                    break;
+                }
+            }
+
+            if (moniker != null) {
+                testItems.put(moniker, result);
+            }
+        }
+        return result;
+    }
+
+    boolean classifyProjectItem(Node node) {
+        return LogNodeUtils.isProjectItem(session, index, node);
+    }
+
+}
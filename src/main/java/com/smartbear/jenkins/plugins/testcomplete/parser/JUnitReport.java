@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the JUnit-style results in memory, so they can be published without
+ * writing and reading back a JUnit XML report.
+ */
+public class JUnitReport implements ILogEventListener {
+
+    public static class Suite {
+
+        private final String name;
+        private final float time;
+        private final String timestamp;
+        private final List<TestCase> testCases = new ArrayList<>();
+
+        Suite(String name, float time, String timestamp) {
+            this.name = name;
+            this.time = time;
+            this.timestamp = timestamp;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public float getTime() {
+            return time;
+        }
+
+        public String getTimestamp() {
+            return timestamp;
+        }
+
+        public List<TestCase> getTestCases() {
+            return Collections.unmodifiableList(testCases);
+        }
+
+    }
+
+    public static class TestCase {
+
+        private final String name;
+        private final String className;
+        private final float time;
+        private final boolean skipped;
+        private final String failureMessage;
+
+        TestCase(String name, String className, float time, boolean skipped, String failureMessage) {
+            this.name = name;
+            this.className = className;
+            this.time = time;
+            this.skipped = skipped;
+            this.failureMessage = failureMessage;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public float getTime() {
+            return time;
+        }
+
+        public boolean isSkipped() {
+            return skipped;
+        }
+
+        public String getFailureMessage() {
+            return skipped ? null : failureMessage;
+        }
+
+    }
+
+    private final List<Suite> suites = new ArrayList<>();
+    private Suite currentSuite = null;
+
+    public List<Suite> getSuites() {
+        return Collections.unmodifiableList(suites);
+    }
+
+    @Override
+    public void startReport() {
+        suites.clear();
+    }
+
+    @Override
+    public void startSuite(String name, float time, String failures, String tests, String timestamp) {
+        currentSuite = new Suite(name, time, timestamp);
+        suites.add(currentSuite);
+    }
+
+    @Override
+    public void addTestCase(String name, String className, float time, boolean skipped, String failureMessage) {
+        if (currentSuite != null) {
+            currentSuite.testCases.add(new TestCase(name, className, time, skipped, failureMessage));
+        }
+    }
+
+    @Override
+    public void endSuite() {
+        currentSuite = null;
+    }
+
+    @Override
+    public void endReport() {
+        // Do nothing
+    }
+
+}
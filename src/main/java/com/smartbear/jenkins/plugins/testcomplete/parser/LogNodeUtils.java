@@ -34,6 +34,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import javax.xml.XMLConstants;
@@ -92,22 +93,23 @@ class LogNodeUtils {
         return null;
     }
 
-    static public List<String> getErrorMessages(Node node) {
-        return getMessages(node, "3");
-    }
-
-    static public List<String> getWarningMessages(Node node) {
-        return getMessages(node, "2");
+    static public Map<String, String> getTextProperties(Node node, Collection<String> propertyNames) {
+        if (node == null) {
+            return null;
+        }
+        Map<String, String> result = new HashMap<>();
+        for (String propertyName : propertyNames) {
+            result.put(propertyName, getTextProperty(node, propertyName));
+        }
+        return result;
     }
 
-    static public List<String> getMessages(Node node, String status) {
-        List<String> result = new LinkedList<>();
-
-        // using TreeMap for sorting messages order
-        Map<Integer, String> orderedResult = new TreeMap<>();
-
+    /**
+     * Passes the error messages and, if requested, the warning messages of a log item to the collector.
+     */
+    static public void collectMessages(Node node, boolean withWarnings, MessageBudget.Collector collector) {
         if (node == null) {
-            return result;
+            return;
         }
 
         NodeList childNodes = node.getChildNodes();
@@ -116,6 +118,17 @@ class LogNodeUtils {
             if ("Node".equals(childNode.getNodeName())) {
                 String name = getTextAttribute(childNode, "name");
                 if (name != null && name.startsWith("message")) {
+                    String type = getTextProperty(childNode, "type");
+                    boolean error = "3".equals(type);
+                    if (!error && !(withWarnings && "2".equals(type))) {
+                        continue;
+                    }
+
+                    String message = getTextProperty(childNode, "message");
+                    if (message == null || message.isEmpty()) {
+                        continue;
+                    }
+
                     int index = 0;
                     try {
                         index = Integer.parseInt(name.replace("message", "").trim());
@@ -123,22 +136,14 @@ class LogNodeUtils {
                         // Do nothing
                     }
 
-                    String type = getTextProperty(childNode, "type");
-                    if (status.equals(type)) {
-                        String message = getTextProperty(childNode, "message");
-                        if (message != null && !message.isEmpty()) {
-                            orderedResult.put(index, message);
-                        }
+                    if (error) {
+                        collector.addError(index, message);
+                    } else {
+                        collector.addWarning(index, message);
                     }
                 }
             }
         }
-
-        for (Map.Entry<Integer, String> entry : orderedResult.entrySet()) {
-            result.add(entry.getValue());
-        }
-
-        return result;
     }
 
     static public Node findRootOwnerNode(NodeList nodes) {
@@ -165,6 +170,26 @@ class LogNodeUtils {
     static private final String LOAD_EXTERNAL_DTD = 
         "http://apache.org/xml/features/nonvalidating/load-external-dtd";
 
+    static private final String ENTITY_EXPANSION_LIMIT =
+        "http://www.oracle.com/xml/jaxp/properties/entityExpansionLimit";
+
+    static private final String TOTAL_ENTITY_SIZE_LIMIT =
+        "http://www.oracle.com/xml/jaxp/properties/totalEntitySizeLimit";
+
+    static private final String MAX_GENERAL_ENTITY_SIZE_LIMIT =
+        "http://www.oracle.com/xml/jaxp/properties/maxGeneralEntitySizeLimit";
+
+    // Logs do not declare entities, these limits only stop the pathological ones
+    static final Map<String, String> ENTITY_LIMITS;
+
+    static {
+        Map<String, String> limits = new LinkedHashMap<>();
+        limits.put(ENTITY_EXPANSION_LIMIT, "1000");
+        limits.put(TOTAL_ENTITY_SIZE_LIMIT, "1000000");
+        limits.put(MAX_GENERAL_ENTITY_SIZE_LIMIT, "100000");
+        ENTITY_LIMITS = Collections.unmodifiableMap(limits);
+    }
+
     // This is added to prevent XXE attack on xml parser
     static private void secureDocumentBuilderFactory(DocumentBuilderFactory factory) 
         throws ParserConfigurationException {
@@ -174,26 +199,38 @@ class LogNodeUtils {
         factory.setFeature(LOAD_EXTERNAL_DTD, false);
         factory.setXIncludeAware(false);
         factory.setExpandEntityReferences(false);
+
+        for (Map.Entry<String, String> limit : ENTITY_LIMITS.entrySet()) {
+            try {
+                factory.setAttribute(limit.getKey(), limit.getValue());
+            } catch (IllegalArgumentException e) {
+                // Not supported by the parser implementation, the secure processing limits are used
+            }
+        }
     }
 
 
-    static public Node getRootDocumentNodeFromArchive(ZipFile archive, String name) {
+    static public DocumentBuilder createDocumentBuilder() throws ParserConfigurationException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        secureDocumentBuilderFactory(factory);
+        return factory.newDocumentBuilder();
+    }
+
+    static public Node getRootDocumentNodeFromArchive(DocumentBuilder builder, ZipFile archive, String name,
+                                                      long maxEntrySize) {
         if (name == null) {
             return null;
         }
 
         ZipEntry rootLogDataEntry = archive.getEntry(name);
-        if (rootLogDataEntry == null) {
+        if (rootLogDataEntry == null || rootLogDataEntry.getSize() > maxEntrySize) {
             return null;
         }
 
         InputStream logDataStream = null;
         try {
-            logDataStream = archive.getInputStream(rootLogDataEntry);
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            secureDocumentBuilderFactory(factory);
-            DocumentBuilder builder = factory.newDocumentBuilder();
-
+            // the DOM tree takes a multiple of the entry size, so the entry is not loaded past the limit
+            logDataStream = new LimitedInputStream(archive.getInputStream(rootLogDataEntry), maxEntrySize);
             Document document = builder.parse(logDataStream);
 
             Element element = document.getDocumentElement();
@@ -213,9 +250,10 @@ class LogNodeUtils {
                     }
                 }
             }
-        } catch (IOException | ParserConfigurationException | SAXException e) {
+        } catch (IOException | SAXException e) {
             // Do nothing
         } finally {
+            builder.reset();
             if (logDataStream != null) {
                 try {
                     logDataStream.close();
@@ -247,17 +285,53 @@ class LogNodeUtils {
         return findNamedNode(node.getChildNodes(), name);
     }
 
-    static public List<String> findChildMessages(Node containerNode, String listName, String prefix) {
-        List<String> result = new ArrayList<>();
-        Map<Integer, String> map = new HashMap<>();
+    /**
+     * Collects the entries whose names, or file names, are the values of the properties
+     * of the node and its descendants. Both slashes and backslashes are accepted in the values.
+     */
+    static public List<String> findReferencedEntries(Node node, Map<String, String> references) {
+        Set<String> result = new LinkedHashSet<>();
+        if (node == null) {
+            return new ArrayList<>(result);
+        }
 
+        Deque<Node> nodes = new ArrayDeque<>();
+        nodes.push(node);
+        while (!nodes.isEmpty()) {
+            Node current = nodes.pop();
+            if ("Prp".equals(current.getNodeName())) {
+                String value = getTextAttribute(current, "value");
+                if (value != null && !value.isEmpty()) {
+                    String path = value.replace('\\', '/');
+                    String entryName = references.get(path);
+                    if (entryName == null) {
+                        entryName = references.get(path.substring(path.lastIndexOf('/') + 1));
+                    }
+                    if (entryName != null) {
+                        result.add(entryName);
+                    }
+                }
+                continue;
+            }
+
+            NodeList childNodes = current.getChildNodes();
+            for (int i = childNodes.getLength() - 1; i >= 0; i--) {
+                nodes.push(childNodes.item(i));
+            }
+        }
+
+        return new ArrayList<>(result);
+    }
+
+    static public void collectChildMessages(Node containerNode, String listName, String prefix,
+                                            BiConsumer<Integer, String> collector) {
         if (containerNode == null) {
-            return result;
+            return;
         }
 
         Node listNode = LogNodeUtils.findNamedNode(containerNode, listName);
         if (listNode == null) {
-            return result;
+            return;
         }
 
         List<Node> messageNodes = LogNodeUtils.findChildNodes(listNode);
@@ -291,46 +365,12 @@ class LogNodeUtils {
                 continue;
             }
 
-            map.put(index, msg);
-        }
-
-        ArrayList<Integer> keys = new ArrayList<Integer>(map.keySet());
-        Collections.sort(keys);
-
-        for (Integer key : keys) {
-            result.add(map.get(key));
+            collector.accept(index, msg);
         }
-
-        return result;
     }
 
-    static public List<Node> findChildNodes(Node root, NodeList nodes) {
-        List<Node> result = new ArrayList<>();
-
-        List<String> childrenKeys = new ArrayList<>();
-        Node childNode = findNamedNode(root.getChildNodes(), "children");
-        if (childNode != null) {
-            NodeList childNodeProperties = childNode.getChildNodes();
-            for (int i = 0; i < childNodeProperties.getLength(); i++) {
-                Node childNodeProperty = childNodeProperties.item(i);
-                String childKey = getTextAttribute(childNodeProperty, "value");
-                if (childKey != null && !childKey.isEmpty()) {
-                    childrenKeys.add(childKey);
-                }
-            }
-        }
-
-        for (String childKey : childrenKeys) {
-            for (int j = 0; j < nodes.getLength(); j++) {
-                Node node = nodes.item(j);
-                String nodeMoniker = getTextProperty(node, "moniker");
-                if (childKey.equals(nodeMoniker)) {
-                    result.add(node);
-                }
-            }
-        }
-
-        return result;
+    static public List<Node> findChildNodes(MonikerIndex index, Node root) {
+        return index.getChildNodes(root);
     }
 
     static public List<Node> findChildNodes(Node parent) {
@@ -345,72 +385,36 @@ class LogNodeUtils {
         return result;
     }
 
-    static public boolean isProjectItem(ZipFile archive, Node node) {
-        String fileName = getTextProperty(node, "filename");
-        Node nodeInfo = getRootDocumentNodeFromArchive(archive, fileName);
+    static public boolean isProjectItem(LogParseSession session, MonikerIndex index, Node node) {
+        String fileName = index.getProperty(node, "filename");
+        Node nodeInfo = session.getRootDocumentNode(fileName);
         Node logDataRowNode = LogNodeUtils.findNamedNode(nodeInfo, "status");
         return logDataRowNode == null;
     }
 
-    static public List<Node> scanForSubItems(Node root, NodeList nodes) {
-        List<String> childrenKeys = new ArrayList<>();
-        Node childNode = findNamedNode(root.getChildNodes(), "children");
-        if (childNode != null) {
-            NodeList childNodeProperties = childNode.getChildNodes();
-            for (int i = 0; i < childNodeProperties.getLength(); i++) {
-                Node childNodeProperty = childNodeProperties.item(i);
-                String childKey = getTextAttribute(childNodeProperty, "value");
-                if (childKey != null && !childKey.isEmpty()) {
-                    childrenKeys.add(childKey);
-                }
-            }
-        }
-
-        List<Node> subItems = new ArrayList<>();
-
-        for (String childKey : childrenKeys) {
-            for (int j = 0; j < nodes.getLength(); j++) {
-                Node node = nodes.item(j);
-                String nodeMoniker = getTextProperty(node, "moniker");
-                if (childKey.equals(nodeMoniker)) {
-                    subItems.add(node);
-                }
-            }
-        }
-
-        return subItems;
-    }
-
-    static public boolean isTestItem(ZipFile archive, Node node, NodeList nodes) {
-        List<Node> subItems = scanForSubItems(node, nodes);
-
-        for (Node subItem : subItems) {
-            if (!isProjectItem(archive, subItem)) {
-                return true;
-            }
-        }
-
-        return false;
+    static public List<Node> scanForSubItems(MonikerIndex index, Node root) {
+        return index.getChildNodes(root);
     }
 
-    static public List<Pair<String, Node>> findChildNodesRecursively(ZipFile archive, Node root, NodeList nodes, String nodeName) {
-        List<Node> subItems = scanForSubItems(root, nodes);
+    static public List<Pair<String, Node>> findChildNodesRecursively(ItemClassifier classifier, Node root, String nodeName) {
+        MonikerIndex index = classifier.getIndex();
+        List<Node> subItems = scanForSubItems(index, root);
         List<Pair<String, Node>> result = new ArrayList<>();
 
-        if (subItems.isEmpty() && isProjectItem(archive, root)) {
+        if (subItems.isEmpty() && classifier.isProjectItem(root)) {
             return result;
         }
 
-        // search sub items
+        // search sub items, they are classified before their parent
         for (Node node : subItems) {
-            String subNodeName = LogNodeUtils.getTextProperty(node, "name");
-            List<Pair<String, Node>> children = findChildNodesRecursively(archive, node, nodes, "".equals(nodeName) ? subNodeName : nodeName + "/" + subNodeName);
+            String subNodeName = index.getProperty(node, "name");
+            List<Pair<String, Node>> children = findChildNodesRecursively(classifier, node, "".equals(nodeName) ? subNodeName : nodeName + "/" + subNodeName);
 
             if (children != null  && !children.isEmpty()) {
                 result.addAll(children);
             }
 
-            if (isProjectItem(archive, node) && isTestItem(archive, node, nodes)){
+            if (classifier.isProjectItem(node) && classifier.isTestItem(node)){
                 result.add(new Pair<>("".equals(nodeName) ? subNodeName : nodeName + "/" + subNodeName, node));
             }
         }
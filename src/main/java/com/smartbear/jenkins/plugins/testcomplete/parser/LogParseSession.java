@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Holds the log archive opened for the time of a single parse and remembers
+ * the entries which have been already parsed, so each entry is inflated and
+ * parsed only once. Entries larger than the configured limit are not loaded.
+ * The session also keeps track of the attachments which have been linked to tests.
+ * The session may be shared by several parsing threads.
+ */
+class LogParseSession implements Closeable {
+
+    private static final int MAX_CACHED_ENTRIES = 512;
+
+    private final ZipFile archive;
+    private final long maxEntrySize;
+    private final MessageBudget messageBudget;
+    private final Queue<DocumentBuilder> builders = new ConcurrentLinkedQueue<>();
+
+    private final Map<String, Node> entries = new LinkedHashMap<String, Node>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = -2413716285426327310L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Node> eldest) {
+            return size() > MAX_CACHED_ENTRIES;
+        }
+
+    };
+
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    // attachment sizes and the names the log may refer to them by, loaded on first use
+    private Map<String, Long> attachments = null;
+    private Map<String, String> attachmentReferences = null;
+    private final Set<String> linkedAttachments = new HashSet<>();
+
+    LogParseSession(ParserSettings context) throws IOException {
+        builders.add(createDocumentBuilder());
+        archive = new ZipFile(context.getLog());
+        maxEntrySize = context.getMaxEntrySize();
+        messageBudget = new MessageBudget(context);
+    }
+
+    private static DocumentBuilder createDocumentBuilder() throws ParsingException {
+        try {
+            return LogNodeUtils.createDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new ParsingException(e.toString());
+        }
+    }
+
+    public ZipFile getArchive() {
+        return archive;
+    }
+
+    public MessageBudget getMessageBudget() {
+        return messageBudget;
+    }
+
+    public Node getRootDocumentNode(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        synchronized (entries) {
+            if (entries.containsKey(name)) {
+                hitCount++;
+                return entries.get(name);
+            }
+            missCount++;
+        }
+
+        // DocumentBuilder is not thread-safe, each thread takes its own one
+        DocumentBuilder builder = builders.poll();
+        if (builder == null) {
+            try {
+                builder = createDocumentBuilder();
+            } catch (ParsingException e) {
+                return null;
+            }
+        }
+
+        Node node;
+        try {
+            node = LogNodeUtils.getRootDocumentNodeFromArchive(builder, archive, name, maxEntrySize);
+        } finally {
+            builders.add(builder);
+        }
+
+        synchronized (entries) {
+            entries.put(name, node);
+        }
+        return node;
+    }
+
+    /**
+     * Returns the sizes of the archive entries which are not a part of the log data.
+     */
+    public synchronized Map<String, Long> getAttachments() {
+        if (attachments == null) {
+            attachments = new LinkedHashMap<>();
+            attachmentReferences = new HashMap<>();
+
+            Enumeration<? extends ZipEntry> archiveEntries = archive.entries();
+            while (archiveEntries.hasMoreElements()) {
+                ZipEntry entry = archiveEntries.nextElement();
+                if (entry.isDirectory() || LogStreamUtils.isLogDataEntry(entry.getName())) {
+                    continue;
+                }
+
+                attachments.put(entry.getName(), entry.getSize());
+
+                String path = entry.getName().replace('\\', '/');
+                attachmentReferences.put(path, entry.getName());
+                attachmentReferences.putIfAbsent(path.substring(path.lastIndexOf('/') + 1), entry.getName());
+            }
+        }
+        return attachments;
+    }
+
+    /**
+     * Returns the attachments referenced by the properties of the node and its descendants
+     * and marks them as linked, so they are not reported as attachments of the whole log.
+     */
+    public List<String> findAttachments(Node node) {
+        Map<String, String> references;
+        synchronized (this) {
+            if (getAttachments().isEmpty()) {
+                return new ArrayList<>();
+            }
+            references = attachmentReferences;
+        }
+
+        List<String> result = LogNodeUtils.findReferencedEntries(node, references);
+        synchronized (this) {
+            linkedAttachments.addAll(result);
+        }
+        return result;
+    }
+
+    public synchronized boolean isLinkedAttachment(String entryName) {
+        return linkedAttachments.contains(entryName);
+    }
+
+    public int getHitCount() {
+        synchronized (entries) {
+            return hitCount;
+        }
+    }
+
+    public int getMissCount() {
+        synchronized (entries) {
+            return missCount;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (entries) {
+            entries.clear();
+        }
+        try {
+            messageBudget.close();
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d cache hits, %d cache misses", archive.getName(), getHitCount(), getMissCount());
+    }
+
+}
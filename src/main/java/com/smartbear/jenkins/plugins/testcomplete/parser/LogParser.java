@@ -29,21 +29,26 @@ import com.smartbear.jenkins.plugins.testcomplete.TcLog;
 import com.smartbear.jenkins.plugins.testcomplete.TcLogInfo;
 import com.smartbear.jenkins.plugins.testcomplete.Utils;
 import hudson.model.TaskListener;
-import org.apache.commons.lang.StringUtils;
 import org.w3c.dom.*;
 
 import javax.xml.stream.*;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.*;
-import java.util.zip.ZipFile;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * @author Igor Filin
  */
 public class LogParser implements ILogParser {
 
+    private static final Logger LOGGER = Logger.getLogger(LogParser.class.getName());
+
     private static final String DESCRIPTION_ENTRY_NAME = "Description.tcLog";
 
     private static final String TEST_COUNT_PROPERTY_NAME = "test count";
@@ -52,8 +57,12 @@ public class LogParser implements ILogParser {
     private static final String ERROR_COUNT_PROPERTY_NAME = "error count";
     private static final String WARNING_COUNT_PROPERTY_NAME = "warning count";
 
+    private static final List<String> DESCRIPTION_PROPERTY_NAMES = Arrays.asList(START_TIME_PROPERTY_NAME,
+            STOP_TIME_PROPERTY_NAME, TEST_COUNT_PROPERTY_NAME, ERROR_COUNT_PROPERTY_NAME, WARNING_COUNT_PROPERTY_NAME);
+
     private final ParserSettings context;
     private final int timezoneOffset;
+    private final List<ILogEventListener> eventListeners = new ArrayList<>();
 
     public LogParser(ParserSettings context, int timezoneOffset) {
         this.context = context;
@@ -61,81 +70,96 @@ public class LogParser implements ILogParser {
     }
 
     @Override
-    public TcLogInfo parse(TaskListener listener) {
-        try {
-            ZipFile logArchive = new ZipFile(context.getLog());
+    public void addEventListener(ILogEventListener listener) {
+        eventListeners.add(listener);
+    }
 
-            Node descriptionTopLevelNode = LogNodeUtils.getRootDocumentNodeFromArchive(logArchive, DESCRIPTION_ENTRY_NAME);
-            if (descriptionTopLevelNode == null) {
+    @Override
+    public TcLogInfo parse(TaskListener listener) {
+        try (LogParseSession session = new LogParseSession(context)) {
+            Map<String, String> description = readDescription(session);
+            if (description == null) {
                 throw new ParsingException("Unable to obtain description top-level node.");
             }
 
-            long startTime = Utils.safeConvertDate(LogNodeUtils.getTextProperty(descriptionTopLevelNode, START_TIME_PROPERTY_NAME));
+            long startTime = Utils.safeConvertDate(description.get(START_TIME_PROPERTY_NAME));
             if (startTime > 0) {
                 startTime -= timezoneOffset;
             }
 
-            long stopTime = Utils.safeConvertDate(LogNodeUtils.getTextProperty(descriptionTopLevelNode, STOP_TIME_PROPERTY_NAME));
+            long stopTime = Utils.safeConvertDate(description.get(STOP_TIME_PROPERTY_NAME));
             if (stopTime > 0) {
                 stopTime -= timezoneOffset;
             }
 
             int testCount = 0;
             try {
-                testCount = Integer.parseInt(LogNodeUtils.getTextProperty(descriptionTopLevelNode, TEST_COUNT_PROPERTY_NAME));
+                testCount = Integer.parseInt(description.get(TEST_COUNT_PROPERTY_NAME));
             } catch (NumberFormatException e) {
                 // Do nothing
             }
 
             int warningCount = 0;
             try {
-                warningCount = Integer.parseInt(LogNodeUtils.getTextProperty(descriptionTopLevelNode, WARNING_COUNT_PROPERTY_NAME));
+                warningCount = Integer.parseInt(description.get(WARNING_COUNT_PROPERTY_NAME));
             } catch (NumberFormatException e) {
                 // Do nothing
             }
 
             int errorCount = 0;
             try {
-                errorCount = Integer.parseInt(LogNodeUtils.getTextProperty(descriptionTopLevelNode, ERROR_COUNT_PROPERTY_NAME));
+                errorCount = Integer.parseInt(description.get(ERROR_COUNT_PROPERTY_NAME));
             } catch (NumberFormatException e) {
                 // Do nothing
             }
 
             TcLogInfo logInfo = new TcLogInfo(startTime, stopTime, testCount, errorCount, warningCount);
 
-            String xml = null;
+            boolean generateReport = context.generateJUnitReports();
+            File reportFile = generateReport ? context.getReportFile() : null;
+            JUnitReport report = generateReport && context.collectResults() ? new JUnitReport() : null;
+
+            List<ILogEventListener> listeners = new ArrayList<>();
+            if (report != null) {
+                listeners.add(report);
+            }
+            if (context.getAttachmentIndexFile() != null) {
+                listeners.add(new AttachmentIndex(context.getAttachmentIndexFile()));
+            }
+            if (context.getResultStoreFile() != null) {
+                listeners.add(new ResultStoreWriter(context.getResultStoreFile()));
+            }
+            listeners.addAll(eventListeners);
 
-            if (context.generateJUnitReports()) {
-                XMLStreamWriter xmlStreamWriter = null;
+            if (reportFile != null || !listeners.isEmpty()) {
                 try {
-                    StringWriter stringWriter = new StringWriter();
-                    xmlStreamWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(stringWriter);
-                    convertToXML(logArchive, logInfo, xmlStreamWriter);
-                    xmlStreamWriter.flush();
-                    xmlStreamWriter.close();
-                    xmlStreamWriter = null;
-                    xml = stringWriter.toString();
+                    LogStreamUtils.writeReport(reportFile, listeners, events -> convertToXML(session, logInfo, events));
+                    logInfo.setReportFile(reportFile);
+                    logInfo.setJUnitReport(report);
                 } catch (Exception e) {
                     TcLog.error(listener, Messages.TcTestBuilder_ExceptionOccurred(), e.toString());
-                } finally {
-                    if (xmlStreamWriter != null) {
-                        xmlStreamWriter.close();
-                    }
                 }
             }
 
-            logInfo.setXML(xml);
+            LOGGER.log(Level.FINE, "Log parsed: {0}", session);
 
             return logInfo;
         } catch ( IOException 
-                | FactoryConfigurationError
-                | XMLStreamException e) {
+                | FactoryConfigurationError e) {
 
             TcLog.error(listener, Messages.TcTestBuilder_ExceptionOccurred(), e.toString());
             return null;
         }
     }
 
+    private Map<String, String> readDescription(LogParseSession session) {
+        if (context.generateJUnitReports()) {
+            // the description node is needed to build the report anyway
+            return LogNodeUtils.getTextProperties(session.getRootDocumentNode(DESCRIPTION_ENTRY_NAME), DESCRIPTION_PROPERTY_NAMES);
+        }
+        return LogStreamUtils.readRootProperties(session.getArchive(), DESCRIPTION_ENTRY_NAME, DESCRIPTION_PROPERTY_NAMES);
+    }
+
     private boolean checkFail(String status) {
         if (context.errorOnWarnings()) {
             return !"0".equals(status);
@@ -147,17 +171,14 @@ public class LogParser implements ILogParser {
         return name.replace(" Log [", " [");
     }
 
-    private void convertToXML(ZipFile logArchive, TcLogInfo logInfo, XMLStreamWriter writer)
+    private void convertToXML(LogParseSession session, TcLogInfo logInfo, ILogEventListener events)
             throws ParsingException, XMLStreamException {
-        writer.writeStartDocument("utf-8", "1.0");
-
-        Node descriptionTopLevelNode = LogNodeUtils.getRootDocumentNodeFromArchive(logArchive, DESCRIPTION_ENTRY_NAME);
+        Node descriptionTopLevelNode = session.getRootDocumentNode(DESCRIPTION_ENTRY_NAME);
         if (descriptionTopLevelNode == null) {
             throw new ParsingException("Unable to obtain description top-level node.");
         }
 
-        Node topLevelNode = LogNodeUtils.getRootDocumentNodeFromArchive(logArchive,
-                LogNodeUtils.getTextProperty(descriptionTopLevelNode, "root file name"));
+        Node topLevelNode = session.getRootDocumentNode(LogNodeUtils.getTextProperty(descriptionTopLevelNode, "root file name"));
 
         if (topLevelNode == null) {
             throw new ParsingException("Unable to obtain root top-level node.");
@@ -165,6 +186,7 @@ public class LogParser implements ILogParser {
 
         NodeList rootNodes = topLevelNode.getChildNodes();
         Node rootOwnerNode = LogNodeUtils.findRootOwnerNode(rootNodes);
+        MonikerIndex index = new MonikerIndex(rootNodes);
 
         if (rootOwnerNode == null) {
             throw new ParsingException("Unable to obtain root owner node.");
@@ -173,8 +195,7 @@ public class LogParser implements ILogParser {
         boolean isSuite = "{00000000-0000-0000-0000-000000000000}".
                 equals(LogNodeUtils.getTextProperty(rootOwnerNode, "projectkey"));
 
-        Node rootOwnerNodeInfo = LogNodeUtils.getRootDocumentNodeFromArchive(logArchive,
-                LogNodeUtils.getTextProperty(rootOwnerNode, "filename"));
+        Node rootOwnerNodeInfo = session.getRootDocumentNode(LogNodeUtils.getTextProperty(rootOwnerNode, "filename"));
 
         if (rootOwnerNodeInfo == null) {
             throw new ParsingException("Unable to obtain root owner node info.");
@@ -183,55 +204,62 @@ public class LogParser implements ILogParser {
         Node rootOwnerNodeInfoSummary = LogNodeUtils.findNamedNode(rootOwnerNodeInfo.getChildNodes(), "summary");
         boolean isSuiteOrProject = rootOwnerNodeInfoSummary != null;
 
-        writer.writeStartElement("testsuites");
+        events.startReport();
 
         if (isSuite) {
-            List<Node> projects = LogNodeUtils.findChildNodes(rootOwnerNode, rootOwnerNode.getParentNode().getChildNodes());
+            List<Node> projects = LogNodeUtils.findChildNodes(index, rootOwnerNode);
             for (Node projectNode : projects) {
-                Node projectNodeInfo = LogNodeUtils.getRootDocumentNodeFromArchive(logArchive,
-                        LogNodeUtils.getTextProperty(projectNode, "filename"));
+                Node projectNodeInfo = session.getRootDocumentNode(index.getProperty(projectNode, "filename"));
                 Node projectNodeInfoSummary = LogNodeUtils.findNamedNode(projectNodeInfo, "summary");
-                processProject(logArchive, projectNode, projectNodeInfoSummary, writer);
+                processProject(session, index, projectNode, projectNodeInfoSummary, events);
             }
         } else if (isSuiteOrProject) {
-            processProject(logArchive, rootOwnerNode, rootOwnerNodeInfoSummary, writer);
+            processProject(session, index, rootOwnerNode, rootOwnerNodeInfoSummary, events);
         } else {
             String testCaseName = LogNodeUtils.getTextProperty(rootOwnerNode, "name");
-            String testCaseDuration = Double.toString(logInfo.getTestDuration() / 1000f);
+            float testCaseDuration = logInfo.getTestDuration() / 1000f;
 
-            writer.writeStartElement("testsuite");
-            writer.writeAttribute("name", context.getProject());
-            writer.writeAttribute("time", testCaseDuration);
+            events.startSuite(context.getProject(), testCaseDuration, null, null, null);
 
-            writer.writeStartElement("testcase");
-            writer.writeAttribute("name", fixTestCaseName(testCaseName));
-            writer.writeAttribute("classname", context.getSuite() + "." + context.getProject());
-            writer.writeAttribute("time", testCaseDuration);
+            String failureMessage = null;
             if (checkFail(LogNodeUtils.getTextProperty(rootOwnerNode, "status"))) {
-                writer.writeStartElement("failure");
-
-                List<String> messages = LogNodeUtils.getErrorMessages(rootOwnerNodeInfo);
-                if (context.errorOnWarnings()) {
-                    messages.addAll(LogNodeUtils.getWarningMessages(rootOwnerNodeInfo));
-                }
+                MessageBudget budget = session.getMessageBudget();
+                MessageBudget.Collector messages = budget.collect(testCaseName);
+                LogNodeUtils.collectMessages(rootOwnerNodeInfo, context.errorOnWarnings(), messages);
 
-                writer.writeAttribute("message", StringUtils.join(messages, "\n\n"));
-                writer.writeEndElement(); //failure
+                failureMessage = budget.addTo(events, messages.select());
+                LogStreamUtils.addAttachments(session, fixTestCaseName(testCaseName),
+                        session.findAttachments(rootOwnerNodeInfo), events);
             }
-            writer.writeEndElement(); //testcase
 
+            events.addTestCase(fixTestCaseName(testCaseName), context.getSuite() + "." + context.getProject(),
+                    testCaseDuration, false, failureMessage);
+            events.endSuite();
+        }
+
+        LogStreamUtils.addAttachments(session, events);
+        events.endReport();
+    }
+
+    private static class ItemDetails {
+
+        private final String name;
+        private final long duration;
+        private final MessageBudget.Failure failure;
+        private final List<String> attachments;
 
-            writer.writeEndElement(); //testsuite
+        ItemDetails(String name, long duration, MessageBudget.Failure failure, List<String> attachments) {
+            this.name = name;
+            this.duration = duration;
+            this.failure = failure;
+            this.attachments = attachments;
         }
 
-        writer.writeEndElement(); //testsuites
-        writer.writeEndDocument();
     }
 
-    private void processItem(ZipFile logArchive, Node node, String projectName, XMLStreamWriter writer, String name)
-            throws ParsingException, XMLStreamException {
-        Node nodeInfo = LogNodeUtils.getRootDocumentNodeFromArchive(logArchive,
-                LogNodeUtils.getTextProperty(node, "filename"));
+    private ItemDetails loadItemDetails(LogParseSession session, MonikerIndex index, Node node, String name)
+            throws ParsingException {
+        Node nodeInfo = session.getRootDocumentNode(index.getProperty(node, "filename"));
 
         if (nodeInfo == null) {
             throw new ParsingException("Unable to obtain item node info.");
@@ -242,34 +270,65 @@ public class LogParser implements ILogParser {
             throw new ParsingException("Unable to obtain log data->row0 node for item with name '" + name + "'.");
         }
 
-        writer.writeStartElement("testcase");
-        writer.writeAttribute("name", name);
-        writer.writeAttribute("classname", context.getSuite() + "." + projectName);
-
         long startTime = Utils.safeConvertDate(LogNodeUtils.getTextProperty(logDataRowNode, "start time"));
         long endTime = Utils.safeConvertDate(LogNodeUtils.getTextProperty(logDataRowNode, "end time"));
         long duration = endTime - startTime > 0 ? endTime - startTime : 0;
 
-        writer.writeAttribute("time", Double.toString(duration / 1000f));
+        MessageBudget.Failure failure = null;
+        List<String> attachments = Collections.emptyList();
 
-        if (checkFail(LogNodeUtils.getTextProperty(node, "status"))) {
+        if (checkFail(index.getProperty(node, "status"))) {
+            Node testDetailsNode = session.getRootDocumentNode(LogNodeUtils.getTextProperty(logDataRowNode, "details"));
+
+            MessageBudget.Collector messages = session.getMessageBudget().collect(name);
+            LogNodeUtils.collectMessages(testDetailsNode, context.errorOnWarnings(), messages);
+
+            failure = messages.select();
+            attachments = session.findAttachments(testDetailsNode);
+        }
+
+        return new ItemDetails(name, duration, failure, attachments);
+    }
 
-            Node testDetailsNode = LogNodeUtils.getRootDocumentNodeFromArchive(logArchive,
-                    LogNodeUtils.getTextProperty(logDataRowNode, "details"));
-            writer.writeStartElement("failure");
+    private List<ItemDetails> loadItemDetailsInParallel(final LogParseSession session, final MonikerIndex index,
+                                                        List<LogNodeUtils.Pair<String, Node>> items)
+            throws ParsingException {
 
-            List<String> messages = LogNodeUtils.getErrorMessages(testDetailsNode);
-            if (context.errorOnWarnings()) {
-                messages.addAll(LogNodeUtils.getWarningMessages(testDetailsNode));
+        ForkJoinPool pool = new ForkJoinPool(Math.min(context.getParallelism(), items.size()));
+        try {
+            List<ForkJoinTask<ItemDetails>> tasks = new ArrayList<>();
+            for (final LogNodeUtils.Pair<String, Node> pair : items) {
+                tasks.add(pool.submit(() -> loadItemDetails(session, index, pair.getValue(), pair.getKey())));
             }
 
-            writer.writeAttribute("message", StringUtils.join(messages, "\n\n"));
-            writer.writeEndElement(); //failure
+            List<ItemDetails> result = new ArrayList<>();
+            for (ForkJoinTask<ItemDetails> task : tasks) {
+                try {
+                    result.add(task.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof ParsingException) {
+                        throw (ParsingException) e.getCause();
+                    }
+                    throw new ParsingException(String.valueOf(e.getCause()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ParsingException(e.toString());
+                }
+            }
+            return result;
+        } finally {
+            pool.shutdownNow();
         }
-        writer.writeEndElement(); //testcase
     }
 
-    private void processProject(ZipFile logArchive, Node rootOwnerNode, Node rootOwnerNodeInfoSummary, XMLStreamWriter writer)
+    private void processItem(LogParseSession session, ItemDetails details, String projectName, ILogEventListener events)
+            throws XMLStreamException {
+        String failureMessage = details.failure != null ? session.getMessageBudget().addTo(events, details.failure) : null;
+        LogStreamUtils.addAttachments(session, details.name, details.attachments, events);
+        events.addTestCase(details.name, context.getSuite() + "." + projectName, details.duration / 1000f, false, failureMessage);
+    }
+
+    private void processProject(LogParseSession session, MonikerIndex index, Node rootOwnerNode, Node rootOwnerNodeInfoSummary, ILogEventListener events)
             throws ParsingException, XMLStreamException {
 
         String totalTests = LogNodeUtils.getTextProperty(
@@ -284,7 +343,7 @@ public class LogParser implements ILogParser {
         cal.setTimeInMillis(startDate);
         String timestamp = Utils.printDateTime(cal);
 
-        String rootOwnerNodeFileName = LogNodeUtils.getTextProperty(rootOwnerNode, "filename");
+        String rootOwnerNodeFileName = index.getProperty(rootOwnerNode, "filename");
         if (rootOwnerNodeFileName == null || rootOwnerNodeFileName.isEmpty()) {
             throw new ParsingException("Unable to obtain filename for project node.");
         }
@@ -292,24 +351,26 @@ public class LogParser implements ILogParser {
         List<LogNodeUtils.Pair<String, Node>> items;
 
         try {
-            items = LogNodeUtils.findChildNodesRecursively(logArchive, rootOwnerNode,
-                    rootOwnerNode.getParentNode().getChildNodes(), "");
+            items = LogNodeUtils.findChildNodesRecursively(new ItemClassifier(session, index), rootOwnerNode, "");
         } catch (Exception e) {
             items = new ArrayList<>();
         }
 
-        writer.writeStartElement("testsuite");
-        writer.writeAttribute("name", projectName);
-        writer.writeAttribute("failures", failedTests);
-        writer.writeAttribute("tests", totalTests);
-        writer.writeAttribute("time", Double.toString(projectDuration / 1000f));
-        writer.writeAttribute("timestamp", timestamp);
+        events.startSuite(projectName, projectDuration / 1000f, failedTests, totalTests, timestamp);
 
-        for (LogNodeUtils.Pair<String, Node> pair : items) {
-            processItem(logArchive, pair.getValue(), projectName, writer, pair.getKey());
+        if (context.getParallelism() > 1 && items.size() > 1) {
+            // item details are loaded on a pool, but written in the original order
+            for (ItemDetails details : loadItemDetailsInParallel(session, index, items)) {
+                processItem(session, details, projectName, events);
+            }
+        } else {
+            for (LogNodeUtils.Pair<String, Node> pair : items) {
+                processItem(session, loadItemDetails(session, index, pair.getValue(), pair.getKey()),
+                        projectName, events);
+            }
         }
 
-        writer.writeEndElement(); //testcase
+        events.endSuite();
     }
 
 }
\ No newline at end of file
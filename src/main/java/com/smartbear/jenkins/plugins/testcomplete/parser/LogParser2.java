@@ -29,24 +29,34 @@ import com.smartbear.jenkins.plugins.testcomplete.TcLog;
 import com.smartbear.jenkins.plugins.testcomplete.TcLogInfo;
 import com.smartbear.jenkins.plugins.testcomplete.Utils;
 import hudson.model.TaskListener;
-import org.apache.commons.lang.StringUtils;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * @author Igor Filin
  */
 public class LogParser2 implements ILogParser {
 
+    private static final Logger LOGGER = Logger.getLogger(LogParser2.class.getName());
+
     private static final String SUMMARY_ENTRY_NAME = "Summary.dat";
     private static final String DESCRIPTION_ENTRY_NAME = "Description.tcLog";
 
@@ -55,17 +65,57 @@ public class LogParser2 implements ILogParser {
     private static final String ERROR_COUNT_PROPERTY_NAME = "error count";
     private static final String WARNING_COUNT_PROPERTY_NAME = "warning count";
 
+    private static final List<String> DESCRIPTION_PROPERTY_NAMES = Arrays.asList(START_TIME_PROPERTY_NAME,
+            STOP_TIME_PROPERTY_NAME, ERROR_COUNT_PROPERTY_NAME, WARNING_COUNT_PROPERTY_NAME);
+
     private static final String UNEXPECTED_LOG_FORMAT = "Unexpected log format";
 
+    // Forces the DOM based Summary.dat conversion instead of the streaming one
+    private static final boolean USE_DOM_SUMMARY_PARSER =
+            Boolean.getBoolean(LogParser2.class.getName() + ".useDomSummaryParser");
+
+    private static class SummaryTestItem {
+
+        private final Map<String, String> properties = new HashMap<>();
+        private MessageBudget.Collector messages = null;
+
+        String getProperty(String name) {
+            return properties.get(name);
+        }
+
+        MessageBudget.Collector getMessages(MessageBudget budget) {
+            if (messages == null) {
+                messages = budget.collect(getProperty("name"));
+            }
+            return messages;
+        }
+
+    }
 
     private final ParserSettings context;
     private final int timezoneOffset;
+    private final List<ILogEventListener> eventListeners = new ArrayList<>();
 
     public LogParser2(ParserSettings context, int timezoneOffset) {
         this.context = context;
         this.timezoneOffset = timezoneOffset;
     }
 
+    @Override
+    public void addEventListener(ILogEventListener listener) {
+        eventListeners.add(listener);
+    }
+
+    /**
+     * Checks whether the archive was written in the log format handled by this parser
+     * rather than by {@link LogParser}.
+     */
+    public static boolean canParse(File log) throws IOException {
+        try (ZipFile archive = new ZipFile(log)) {
+            return archive.getEntry(SUMMARY_ENTRY_NAME) != null;
+        }
+    }
+
     private boolean checkIncomplete(String status) {
         return "3".equals(status);
     }
@@ -81,32 +131,40 @@ public class LogParser2 implements ILogParser {
         return name.replace(" Log [", " [");
     }
 
-    private TcLogInfo extractBaseLogInfo(ZipFile logArchive) throws ParsingException {
-        Node descriptionTopLevelNode = LogNodeUtils.getRootDocumentNodeFromArchive(logArchive, DESCRIPTION_ENTRY_NAME);
-        if (descriptionTopLevelNode == null) {
+    private Map<String, String> readDescription(LogParseSession session) {
+        if (context.generateJUnitReports()) {
+            // the description node is needed to build the report anyway
+            return LogNodeUtils.getTextProperties(session.getRootDocumentNode(DESCRIPTION_ENTRY_NAME), DESCRIPTION_PROPERTY_NAMES);
+        }
+        return LogStreamUtils.readRootProperties(session.getArchive(), DESCRIPTION_ENTRY_NAME, DESCRIPTION_PROPERTY_NAMES);
+    }
+
+    private TcLogInfo extractBaseLogInfo(LogParseSession session) throws ParsingException {
+        Map<String, String> description = readDescription(session);
+        if (description == null) {
             throw new ParsingException(UNEXPECTED_LOG_FORMAT);
         }
 
-        long startTime = Utils.safeConvertDate(LogNodeUtils.getTextProperty(descriptionTopLevelNode, START_TIME_PROPERTY_NAME));
+        long startTime = Utils.safeConvertDate(description.get(START_TIME_PROPERTY_NAME));
         if (startTime > 0) {
             startTime -= timezoneOffset;
         }
 
-        long stopTime = Utils.safeConvertDate(LogNodeUtils.getTextProperty(descriptionTopLevelNode, STOP_TIME_PROPERTY_NAME));
+        long stopTime = Utils.safeConvertDate(description.get(STOP_TIME_PROPERTY_NAME));
         if (stopTime > 0) {
             stopTime -= timezoneOffset;
         }
 
         int warningCount;
         try {
-            warningCount = Integer.parseInt(LogNodeUtils.getTextProperty(descriptionTopLevelNode, WARNING_COUNT_PROPERTY_NAME));
+            warningCount = Integer.parseInt(description.get(WARNING_COUNT_PROPERTY_NAME));
         } catch (NumberFormatException e) {
             throw new ParsingException(UNEXPECTED_LOG_FORMAT);
         }
 
         int errorCount;
         try {
-            errorCount = Integer.parseInt(LogNodeUtils.getTextProperty(descriptionTopLevelNode, ERROR_COUNT_PROPERTY_NAME));
+            errorCount = Integer.parseInt(description.get(ERROR_COUNT_PROPERTY_NAME));
         } catch (NumberFormatException e) {
             throw new ParsingException(UNEXPECTED_LOG_FORMAT);
         }
@@ -114,16 +172,13 @@ public class LogParser2 implements ILogParser {
         return new TcLogInfo(startTime, stopTime, 0, errorCount, warningCount);
     }
 
-    private void convertSingleEntryToXML(ZipFile logArchive, TcLogInfo logInfo, XMLStreamWriter writer) throws ParsingException, XMLStreamException {
-        writer.writeStartDocument("utf-8", "1.0");
-
-        Node descriptionTopLevelNode = LogNodeUtils.getRootDocumentNodeFromArchive(logArchive, DESCRIPTION_ENTRY_NAME);
+    private void convertSingleEntryToXML(LogParseSession session, TcLogInfo logInfo, ILogEventListener events) throws ParsingException, XMLStreamException {
+        Node descriptionTopLevelNode = session.getRootDocumentNode(DESCRIPTION_ENTRY_NAME);
         if (descriptionTopLevelNode == null) {
             throw new ParsingException(UNEXPECTED_LOG_FORMAT);
         }
 
-        Node topLevelNode = LogNodeUtils.getRootDocumentNodeFromArchive(logArchive,
-                LogNodeUtils.getTextProperty(descriptionTopLevelNode, "root file name"));
+        Node topLevelNode = session.getRootDocumentNode(LogNodeUtils.getTextProperty(descriptionTopLevelNode, "root file name"));
 
         if (topLevelNode == null) {
             throw new ParsingException(UNEXPECTED_LOG_FORMAT);
@@ -136,49 +191,42 @@ public class LogParser2 implements ILogParser {
             throw new ParsingException(UNEXPECTED_LOG_FORMAT);
         }
 
-        Node rootOwnerNodeInfo = LogNodeUtils.getRootDocumentNodeFromArchive(logArchive,
-                LogNodeUtils.getTextProperty(rootOwnerNode, "filename"));
+        Node rootOwnerNodeInfo = session.getRootDocumentNode(LogNodeUtils.getTextProperty(rootOwnerNode, "filename"));
 
         if (rootOwnerNodeInfo == null) {
             throw new ParsingException(UNEXPECTED_LOG_FORMAT);
         }
 
-        writer.writeStartElement("testsuites");
-
         String testCaseName = LogNodeUtils.getTextProperty(rootOwnerNode, "name");
-        String testCaseDuration = Double.toString(logInfo.getTestDuration() / 1000f);
-
-        writer.writeStartElement("testsuite");
-        writer.writeAttribute("name", context.getProject());
-        writer.writeAttribute("time", testCaseDuration);
+        float testCaseDuration = logInfo.getTestDuration() / 1000f;
 
-        writer.writeStartElement("testcase");
-        writer.writeAttribute("name", fixTestCaseName(testCaseName));
-        writer.writeAttribute("classname", context.getSuite() + "." + context.getProject());
-        writer.writeAttribute("time", testCaseDuration);
+        events.startReport();
+        events.startSuite(context.getProject(), testCaseDuration, null, null, null);
 
+        String failureMessage = null;
         if (checkFail(LogNodeUtils.getTextProperty(rootOwnerNode, "status"))) {
-            writer.writeStartElement("failure");
-
-            List<String> messages = LogNodeUtils.getErrorMessages(rootOwnerNodeInfo);
-            if (context.errorOnWarnings()) {
-                messages.addAll(LogNodeUtils.getWarningMessages(rootOwnerNodeInfo));
-            }
+            MessageBudget budget = session.getMessageBudget();
+            MessageBudget.Collector messages = budget.collect(testCaseName);
+            LogNodeUtils.collectMessages(rootOwnerNodeInfo, context.errorOnWarnings(), messages);
 
-            writer.writeAttribute("message", StringUtils.join(messages, "\n\n"));
-            writer.writeEndElement(); //failure
+            failureMessage = budget.addTo(events, messages.select());
+            LogStreamUtils.addAttachments(session, fixTestCaseName(testCaseName),
+                    session.findAttachments(rootOwnerNodeInfo), events);
         }
 
-        writer.writeEndElement(); //testcase
-        writer.writeEndElement(); //testsuite
-        writer.writeEndElement(); //testsuites
-        writer.writeEndDocument();
+        events.addTestCase(fixTestCaseName(testCaseName), context.getSuite() + "." + context.getProject(),
+                testCaseDuration, false, failureMessage);
+        events.endSuite();
+
+        LogStreamUtils.addAttachments(session, events);
+        events.endReport();
     }
 
-    private void convertSummaryToXML(Node summaryNode, XMLStreamWriter writer) throws ParsingException, XMLStreamException {
+    private void convertSummaryToXML(LogParseSession session, Node summaryNode, ILogEventListener events)
+            throws ParsingException, XMLStreamException {
+        MessageBudget budget = session.getMessageBudget();
 
-        writer.writeStartDocument("utf-8", "1.0");
-        writer.writeStartElement("testsuites");
+        events.startReport();
 
         Node projectsNode = LogNodeUtils.findNamedNode(summaryNode, "projects");
 
@@ -186,9 +234,11 @@ public class LogParser2 implements ILogParser {
             throw new ParsingException(UNEXPECTED_LOG_FORMAT);
         }
 
+        // the nodes are listed in the reverse order, suites and tests are written in the document order
         List<Node> projectNodes = LogNodeUtils.findChildNodes(projectsNode);
 
-        for (Node projectNode : projectNodes) {
+        for (int i = projectNodes.size() - 1; i >= 0; i--) {
+            Node projectNode = projectNodes.get(i);
             String failedTests = LogNodeUtils.getTextProperty(projectNode, "failedtests");
             if (failedTests == null) {
                 failedTests = Integer.toString(0);
@@ -205,93 +255,302 @@ public class LogParser2 implements ILogParser {
             List<Node> testNodes = LogNodeUtils.findChildNodes(testsNode);
 
             String projectDurationMS = LogNodeUtils.getTextProperty(projectNode, "duration");
-            String projectDuration = Double.toString(Integer.parseInt(projectDurationMS) / 1000f);
-
-            writer.writeStartElement("testsuite");
-            writer.writeAttribute("name", testProjectName);
-            writer.writeAttribute("time", projectDuration);
+            float projectDuration = Integer.parseInt(projectDurationMS) / 1000f;
 
-            writer.writeAttribute("failures", failedTests);
-            writer.writeAttribute("tests", Integer.toString(testNodes.size()));
-            writer.writeAttribute("timestamp", LogNodeUtils.startTimeToTimestamp(testStartTime));
+            events.startSuite(testProjectName, projectDuration, failedTests, null,
+                    LogNodeUtils.startTimeToTimestamp(testStartTime));
 
-            for (Node testNode : testNodes) {
+            for (int j = testNodes.size() - 1; j >= 0; j--) {
+                Node testNode = testNodes.get(j);
                 String testName = LogNodeUtils.getTextProperty(testNode, "name");
 
-                writer.writeStartElement("testcase");
-                writer.writeAttribute("name", testName);
-                writer.writeAttribute("classname", context.getSuite() + "." + testProjectName);
-
                 String testDurationMS = LogNodeUtils.getTextProperty(testNode, "duration");
-                String testDuration = Double.toString(Integer.parseInt(testDurationMS) / 1000f);
-
-                writer.writeAttribute("time", testDuration);
+                float testDuration = Integer.parseInt(testDurationMS) / 1000f;
 
                 String testCaseStatus = LogNodeUtils.getTextProperty(testNode, "status");
 
-                if (checkIncomplete(testCaseStatus)) {
-                    writer.writeStartElement("skipped");
-                    writer.writeEndElement(); //skipped
-                } else if (checkFail(testCaseStatus)) {
-                    writer.writeStartElement("failure");
+                boolean skipped = checkIncomplete(testCaseStatus);
+                String failureMessage = null;
 
-                    List<String> messages = new ArrayList<>();
+                if (!skipped && checkFail(testCaseStatus)) {
+                    MessageBudget.Collector messages = budget.collect(testName);
 
-                    List<String> errors = LogNodeUtils.findChildMessages(testNode, "errors", "error");
-                    messages.addAll(errors);
+                    LogNodeUtils.collectChildMessages(testNode, "errors", "error", messages::addError);
 
                     if (context.errorOnWarnings()) {
-                        List<String> warnings = LogNodeUtils.findChildMessages(testNode, "warnings", "warning");
-                        messages.addAll(warnings);
+                        LogNodeUtils.collectChildMessages(testNode, "warnings", "warning", messages::addWarning);
                     }
 
-                    writer.writeAttribute("message", StringUtils.join(messages, "\n\n"));
-                    writer.writeEndElement(); //failure
+                    failureMessage = budget.addTo(events, messages.select());
                 }
 
-                writer.writeEndElement(); //testcase
+                events.addTestCase(testName, context.getSuite() + "." + testProjectName, testDuration, skipped, failureMessage);
+            }
+
+            events.endSuite();
+        }
+
+        LogStreamUtils.addAttachments(session, events);
+        events.endReport();
+    }
+
+    private boolean convertSummaryToXMLStreaming(LogParseSession session, File reportFile, List<ILogEventListener> listeners) {
+        ZipEntry summaryEntry = session.getArchive().getEntry(SUMMARY_ENTRY_NAME);
+        if (summaryEntry == null) {
+            return false;
+        }
+
+        XMLStreamReader reader = null;
+        try (InputStream summaryStream = session.getArchive().getInputStream(summaryEntry)) {
+            reader = LogStreamUtils.createInputFactory().createXMLStreamReader(summaryStream);
+            XMLStreamReader summaryReader = reader;
+            LogStreamUtils.writeReport(reportFile, listeners,
+                    events -> convertSummaryToXML(session, summaryReader, events));
+            return true;
+        } catch (IOException | XMLStreamException | NumberFormatException e) {
+            // The incomplete report has been removed, the DOM based conversion will be used instead
+            return false;
+        } finally {
+            LogStreamUtils.closeQuietly(reader);
+        }
+    }
+
+    private void convertSummaryToXML(LogParseSession session, XMLStreamReader reader, ILogEventListener events)
+            throws ParsingException, XMLStreamException {
+        if (!LogStreamUtils.nextChildElement(reader) || !"1".equals(LogStreamUtils.getAttribute(reader, "version"))) {
+            throw new ParsingException(UNEXPECTED_LOG_FORMAT);
+        }
+
+        // search the "root" node
+        boolean rootFound = false;
+        while (!rootFound && LogStreamUtils.nextChildElement(reader)) {
+            if ("root".equals(LogStreamUtils.getAttribute(reader, "name"))) {
+                rootFound = true;
+            } else {
+                LogStreamUtils.skipElement(reader);
+            }
+        }
+
+        if (!rootFound) {
+            throw new ParsingException(UNEXPECTED_LOG_FORMAT);
+        }
+
+        // search the "projects" node
+        boolean projectsFound = false;
+        while (!projectsFound && LogStreamUtils.nextChildElement(reader)) {
+            if ("projects".equals(LogStreamUtils.getAttribute(reader, "name"))) {
+                projectsFound = true;
+            } else {
+                LogStreamUtils.skipElement(reader);
+            }
+        }
+
+        if (!projectsFound) {
+            throw new ParsingException(UNEXPECTED_LOG_FORMAT);
+        }
+
+        events.startReport();
+
+        // suites and tests are written as they are read, only the test being read is kept
+        while (LogStreamUtils.nextChildElement(reader)) {
+            if (LogStreamUtils.isNode(reader)) {
+                convertProjectToXML(reader, session.getMessageBudget(), events);
+            } else {
+                LogStreamUtils.skipElement(reader);
             }
+        }
+
+        LogStreamUtils.addAttachments(session, events);
+        events.endReport();
+    }
 
-            writer.writeEndElement(); //testsuite
+    private void convertProjectToXML(XMLStreamReader reader, MessageBudget budget, ILogEventListener events)
+            throws ParsingException, XMLStreamException {
+        Map<String, String> properties = new HashMap<>();
+        boolean testsFound = false;
+
+        while (LogStreamUtils.nextChildElement(reader)) {
+            if (LogStreamUtils.isProperty(reader)) {
+                readProperty(reader, properties);
+            } else if (!testsFound && "tests".equals(LogStreamUtils.getAttribute(reader, "name"))) {
+                testsFound = true;
+                convertTestsToXML(reader, properties, budget, events);
+            } else {
+                LogStreamUtils.skipElement(reader);
+            }
         }
 
-        writer.writeEndElement(); //testsuites
-        writer.writeEndDocument();
+        if (!testsFound) {
+            throw new ParsingException(UNEXPECTED_LOG_FORMAT);
+        }
+    }
+
+    // the properties of the project precede its tests, the suite is started with the ones read so far
+    private void convertTestsToXML(XMLStreamReader reader, Map<String, String> properties, MessageBudget budget,
+                                   ILogEventListener events) throws ParsingException, XMLStreamException {
+        String testProjectName = properties.get("name");
+        String projectDurationMS = properties.get("duration");
+        if (testProjectName == null || projectDurationMS == null) {
+            throw new ParsingException(UNEXPECTED_LOG_FORMAT);
+        }
+
+        String failedTests = properties.get("failedtests");
+        if (failedTests == null) {
+            failedTests = Integer.toString(0);
+        }
+
+        float projectDuration = Integer.parseInt(projectDurationMS) / 1000f;
+
+        // the number of tests is not known before they are read
+        events.startSuite(testProjectName, projectDuration, failedTests, null,
+                LogNodeUtils.startTimeToTimestamp(properties.get("starttime")));
+
+        while (LogStreamUtils.nextChildElement(reader)) {
+            if (!LogStreamUtils.isNode(reader)) {
+                LogStreamUtils.skipElement(reader);
+                continue;
+            }
+
+            SummaryTestItem test = readTest(reader, budget);
+
+            float testDuration = Integer.parseInt(test.getProperty("duration")) / 1000f;
+
+            String testCaseStatus = test.getProperty("status");
+
+            boolean skipped = checkIncomplete(testCaseStatus);
+            String failureMessage = null;
+
+            if (!skipped && checkFail(testCaseStatus)) {
+                // the warnings have only been read if they fail the test
+                failureMessage = budget.addTo(events, test.getMessages(budget).select());
+            }
+
+            events.addTestCase(test.getProperty("name"), context.getSuite() + "." + testProjectName,
+                    testDuration, skipped, failureMessage);
+        }
+
+        events.endSuite();
+    }
+
+    private SummaryTestItem readTest(XMLStreamReader reader, MessageBudget budget) throws XMLStreamException {
+        SummaryTestItem test = new SummaryTestItem();
+        boolean errorsFound = false;
+        boolean warningsFound = false;
+
+        while (LogStreamUtils.nextChildElement(reader)) {
+            String name = LogStreamUtils.getAttribute(reader, "name");
+            if (LogStreamUtils.isProperty(reader)) {
+                readProperty(reader, test.properties);
+            } else if (!errorsFound && "errors".equals(name)) {
+                errorsFound = true;
+                readMessages(reader, "error", test.getMessages(budget)::addError);
+            } else if (!warningsFound && "warnings".equals(name) && context.errorOnWarnings()) {
+                // warnings are only reported when they fail the test
+                warningsFound = true;
+                readMessages(reader, "warning", test.getMessages(budget)::addWarning);
+            } else {
+                LogStreamUtils.skipElement(reader);
+            }
+        }
+
+        return test;
+    }
+
+    // only the messages which may get into the report are kept by the collector, the rest is spilled
+    private void readMessages(XMLStreamReader reader, String prefix, BiConsumer<Integer, String> collector)
+            throws XMLStreamException {
+        while (LogStreamUtils.nextChildElement(reader)) {
+            String name = LogStreamUtils.getAttribute(reader, "name");
+            if (!LogStreamUtils.isNode(reader) || name == null || !name.startsWith(prefix)) {
+                LogStreamUtils.skipElement(reader);
+                continue;
+            }
+
+            int index;
+            try {
+                index = Integer.parseInt(name.substring(prefix.length()));
+            } catch (NumberFormatException e) {
+                LogStreamUtils.skipElement(reader);
+                continue;
+            }
+
+            Map<String, String> properties = new HashMap<>();
+            while (LogStreamUtils.nextChildElement(reader)) {
+                if (LogStreamUtils.isProperty(reader)) {
+                    readProperty(reader, properties);
+                } else {
+                    LogStreamUtils.skipElement(reader);
+                }
+            }
+
+            String msg = properties.get("msg");
+            if (msg != null && !msg.trim().isEmpty()) {
+                collector.accept(index, msg.trim());
+            }
+        }
+    }
+
+    private void readProperty(XMLStreamReader reader, Map<String, String> properties) throws XMLStreamException {
+        String name = LogStreamUtils.getAttribute(reader, "name");
+        if (name != null && !properties.containsKey(name)) {
+            properties.put(name, LogStreamUtils.getAttribute(reader, "value"));
+        }
+        LogStreamUtils.skipElement(reader);
     }
 
     @Override
     public TcLogInfo parse(TaskListener listener) {
-        try {
-            ZipFile logArchive = new ZipFile(context.getLog());
-            TcLogInfo logInfo = extractBaseLogInfo(logArchive);
-
-            String xml = null;
-
-            if (context.generateJUnitReports()) {
-                XMLStreamWriter xmlStreamWriter = null;
-                try {
-                    Node summaryNode = LogNodeUtils.getRootDocumentNodeFromArchive(logArchive, SUMMARY_ENTRY_NAME);
-                    StringWriter stringWriter = new StringWriter();
-                    xmlStreamWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(stringWriter);
-
-                    if (summaryNode != null) {
-                        convertSummaryToXML(summaryNode, xmlStreamWriter);
-                    } else {
-                        convertSingleEntryToXML(logArchive, logInfo, xmlStreamWriter);
-                    }
+        try (LogParseSession session = new LogParseSession(context)) {
+            TcLogInfo logInfo = extractBaseLogInfo(session);
+
+            boolean generateReport = context.generateJUnitReports();
+            File reportFile = generateReport ? context.getReportFile() : null;
+            JUnitReport report = generateReport && context.collectResults() ? new JUnitReport() : null;
+
+            List<ILogEventListener> listeners = new ArrayList<>();
+            if (report != null) {
+                listeners.add(report);
+            }
+            if (context.getAttachmentIndexFile() != null) {
+                listeners.add(new AttachmentIndex(context.getAttachmentIndexFile()));
+            }
+            if (context.getResultStoreFile() != null) {
+                listeners.add(new ResultStoreWriter(context.getResultStoreFile()));
+            }
+            listeners.addAll(eventListeners);
+
+            if (reportFile != null || !listeners.isEmpty()) {
+                boolean generated = false;
+
+                if (!USE_DOM_SUMMARY_PARSER) {
+                    generated = convertSummaryToXMLStreaming(session, reportFile, listeners);
+                }
 
-                    xmlStreamWriter.flush();
-                    xmlStreamWriter.close();
-                    xmlStreamWriter = null;
-                    xml = stringWriter.toString();
-                } finally {
-                    if (xmlStreamWriter != null) {
-                        xmlStreamWriter.close();
+                if (!generated) {
+                    Node summaryNode = session.getRootDocumentNode(SUMMARY_ENTRY_NAME);
+
+                    ZipEntry summaryEntry = session.getArchive().getEntry(SUMMARY_ENTRY_NAME);
+                    if (summaryNode == null && summaryEntry != null) {
+                        // the whole log would be reported as a single test otherwise
+                        TcLog.warning(listener, Messages.LogParser2_UnableToLoadSummary(), SUMMARY_ENTRY_NAME,
+                                summaryEntry.getSize(), context.getMaxEntrySize());
+                        throw new ParsingException("Unable to load " + SUMMARY_ENTRY_NAME);
                     }
+
+                    LogStreamUtils.writeReport(reportFile, listeners, events -> {
+                        if (summaryNode != null) {
+                            convertSummaryToXML(session, summaryNode, events);
+                        } else {
+                            convertSingleEntryToXML(session, logInfo, events);
+                        }
+                    });
                 }
+
+                logInfo.setReportFile(reportFile);
+                logInfo.setJUnitReport(report);
             }
 
-            logInfo.setXML(xml);
+            LOGGER.log(Level.FINE, "Log parsed: {0}", session);
 
             return logInfo;
         }
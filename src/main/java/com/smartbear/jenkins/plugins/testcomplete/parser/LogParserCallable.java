@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import com.smartbear.jenkins.plugins.testcomplete.TcLogInfo;
+import hudson.model.TaskListener;
+import hudson.remoting.Callable;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Parses a log on the node that owns the files referenced by the parser settings,
+ * so it can be sent to an agent and only the parsing results are returned.
+ */
+public class LogParserCallable implements Callable<TcLogInfo, IOException> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ParserSettings context;
+    private final boolean newLogVersion;
+    private final int timezoneOffset;
+    private final TaskListener listener;
+    private File cacheDirectory = null;
+
+    public LogParserCallable(ParserSettings context, boolean newLogVersion, int timezoneOffset, TaskListener listener) {
+        this.context = context;
+        this.newLogVersion = newLogVersion;
+        this.timezoneOffset = timezoneOffset;
+        this.listener = listener;
+    }
+
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    public TcLogInfo call() {
+        if (cacheDirectory == null || ParseResultCache.DISABLED) {
+            return createParser(context).parse(listener);
+        }
+
+        String variant = (newLogVersion ? "LogParser2" : "LogParser") + ":" + timezoneOffset;
+        return new ParseResultCache(cacheDirectory).parse(context, variant, this::createParser, listener);
+    }
+
+    private ILogParser createParser(ParserSettings settings) {
+        if (newLogVersion) {
+            return new LogParser2(settings, timezoneOffset);
+        } else {
+            return new LogParser(settings, timezoneOffset);
+        }
+    }
+
+    @Override
+    public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+        // Stub
+    }
+
+}
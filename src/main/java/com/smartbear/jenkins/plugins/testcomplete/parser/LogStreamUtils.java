@@ -0,0 +1,263 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Helpers for forward-only (StAX) reading of log entries and writing of reports.
+ */
+class LogStreamUtils {
+
+    static final String REPORT_ENCODING = "UTF-8";
+
+    // entries holding the log itself, the rest of the archive are attachments
+    static private final List<String> LOG_DATA_EXTENSIONS = Arrays.asList(".xml", ".tclog", ".tcroot", ".dat");
+
+    interface ReportContent {
+        void write(ILogEventListener events) throws IOException, XMLStreamException;
+    }
+
+    static public XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+
+        // This is added to prevent XXE attack on xml parser
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        for (Map.Entry<String, String> limit : LogNodeUtils.ENTITY_LIMITS.entrySet()) {
+            try {
+                factory.setProperty(limit.getKey(), limit.getValue());
+            } catch (IllegalArgumentException e) {
+                // Not supported by the parser implementation
+            }
+        }
+        return factory;
+    }
+
+    static public String getAttribute(XMLStreamReader reader, String name) {
+        return reader.getAttributeValue(null, name);
+    }
+
+    static public boolean isProperty(XMLStreamReader reader) {
+        return "Prp".equals(reader.getLocalName());
+    }
+
+    static public boolean isNode(XMLStreamReader reader) {
+        return "Node".equals(reader.getLocalName());
+    }
+
+    /**
+     * Moves the reader to the start of the next child element of the current element.
+     * Returns false when the end of the current element is reached instead.
+     */
+    static public boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the reader from the start of the current element to its end, skipping all children.
+     */
+    static public void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    static public void closeQuietly(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // Do nothing
+            }
+        }
+    }
+
+    /**
+     * Reads the requested properties of the "root" node of the given entry without building its DOM.
+     * Reading stops as soon as all of the properties have been found, so usually only the
+     * beginning of the entry is inflated. Returns null if the entry has an unexpected format.
+     */
+    static public Map<String, String> readRootProperties(ZipFile archive, String name, Collection<String> propertyNames) {
+        ZipEntry entry = archive.getEntry(name);
+        if (entry == null) {
+            return null;
+        }
+
+        XMLStreamReader reader = null;
+        try (InputStream stream = archive.getInputStream(entry)) {
+            reader = createInputFactory().createXMLStreamReader(stream);
+
+            if (!nextChildElement(reader) || !"1".equals(getAttribute(reader, "version"))) {
+                return null;
+            }
+
+            while (nextChildElement(reader)) {
+                if ("root".equals(getAttribute(reader, "name"))) {
+                    return readProperties(reader, propertyNames);
+                }
+                skipElement(reader);
+            }
+            return null;
+        } catch (IOException | XMLStreamException e) {
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private static Map<String, String> readProperties(XMLStreamReader reader, Collection<String> propertyNames)
+            throws XMLStreamException {
+        Map<String, String> properties = new HashMap<>();
+        Set<String> remaining = new HashSet<>(propertyNames);
+
+        // the first property with the given name wins, as in LogNodeUtils.getTextProperty
+        while (!remaining.isEmpty() && nextChildElement(reader)) {
+            if (isProperty(reader)) {
+                String propertyName = getAttribute(reader, "name");
+                if (propertyName != null && remaining.remove(propertyName)) {
+                    properties.put(propertyName, getAttribute(reader, "value"));
+                }
+            }
+            skipElement(reader);
+        }
+        return properties;
+    }
+
+    /**
+     * Streams the report produced by the given content straight to the file, if it is specified,
+     * and passes the same events to the listeners, so all outputs are produced by a single walk.
+     * The file is removed if the content could not be written completely.
+     */
+    static public void writeReport(File file, List<ILogEventListener> listeners, ReportContent content)
+            throws IOException, XMLStreamException {
+        if (file == null) {
+            content.write(listeners.size() == 1 ? listeners.get(0) : new CompositeLogEventListener(listeners));
+            return;
+        }
+
+        boolean written = false;
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(os, REPORT_ENCODING);
+            try {
+                List<ILogEventListener> allListeners = new ArrayList<>();
+                allListeners.add(new XmlReportWriter(writer));
+                allListeners.addAll(listeners);
+                content.write(allListeners.size() == 1 ? allListeners.get(0) : new CompositeLogEventListener(allListeners));
+                writer.flush();
+            } finally {
+                closeQuietly(writer);
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    /**
+     * Passes the attachments found for the test to the listener.
+     */
+    static public void addAttachments(LogParseSession session, String testName, List<String> entryNames,
+                                      ILogEventListener events) throws XMLStreamException {
+        Map<String, Long> attachments = session.getAttachments();
+        for (String entryName : entryNames) {
+            events.addAttachment(testName, entryName, attachments.get(entryName));
+        }
+    }
+
+    /**
+     * Passes the archive entries which are not a part of the log data and have not been
+     * linked to a test to the listener.
+     */
+    static public void addAttachments(LogParseSession session, ILogEventListener events) throws XMLStreamException {
+        for (Map.Entry<String, Long> attachment : session.getAttachments().entrySet()) {
+            if (!session.isLinkedAttachment(attachment.getKey())) {
+                events.addAttachment(null, attachment.getKey(), attachment.getValue());
+            }
+        }
+    }
+
+    static boolean isLogDataEntry(String name) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        for (String extension : LOG_DATA_EXTENSIONS) {
+            if (lowerCaseName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static public void closeQuietly(XMLStreamWriter writer) {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (XMLStreamException e) {
+                // Do nothing
+            }
+        }
+    }
+
+}
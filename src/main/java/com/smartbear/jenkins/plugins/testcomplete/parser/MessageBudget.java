@@ -0,0 +1,276 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Joins the messages of a failed test into the failure message within the limits of
+ * the parser settings. The messages which do not fit are written to the overflow file,
+ * so a test with thousands of messages does not end up as a huge report attribute.
+ * The budget may be shared by several parsing threads.
+ */
+class MessageBudget implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(MessageBudget.class.getName());
+
+    static final String SEPARATOR = "\n\n";
+
+    private static final String TRUNCATED_MARKER = "...";
+    private static final String OMITTED_MESSAGE = "%d more message(s) omitted.";
+    private static final String OMITTED_MESSAGE_WITH_FILE = "%d more message(s) omitted, see %s for the full list.";
+
+    /**
+     * Message cut to the length limit. The full text of a truncated message is in the overflow file.
+     */
+    static class Fitted {
+
+        private final String text;
+        private final boolean truncated;
+
+        Fitted(String text, boolean truncated) {
+            this.text = text;
+            this.truncated = truncated;
+        }
+
+    }
+
+    /**
+     * Messages of a failed test selected for the report.
+     */
+    static class Failure {
+
+        private final String testName;
+        private final List<String> messages;
+        private final int omitted;
+
+        Failure(String testName, List<String> messages, int omitted) {
+            this.testName = testName;
+            this.messages = messages;
+            this.omitted = omitted;
+        }
+
+    }
+
+    private final int maxMessages;
+    private final int maxMessageLength;
+    private final int maxFailureLength;
+    private final File overflowFile;
+
+    private Writer overflowWriter = null;
+    private String lastTestName = null;
+    private boolean overflowFailed = false;
+
+    MessageBudget(ParserSettings context) {
+        this.maxMessages = context.getMaxMessages();
+        this.maxMessageLength = context.getMaxMessageLength();
+        this.maxFailureLength = context.getMaxFailureLength();
+        this.overflowFile = context.getOverflowFile();
+    }
+
+    /**
+     * Creates a collector for the messages of the given test.
+     */
+    Collector collect(String testName) {
+        return new Collector(testName);
+    }
+
+    /**
+     * Keeps the messages of a test which may get into its failure message. The errors are
+     * listed before the warnings, both are ordered by the message index. No more messages
+     * than the report shows are kept in memory, the others are spilled as they are added.
+     */
+    class Collector {
+
+        private final String testName;
+        private final TreeMap<Integer, Fitted> errors = new TreeMap<>();
+        private final TreeMap<Integer, Fitted> warnings = new TreeMap<>();
+        private int spilledCount = 0;
+
+        private Collector(String testName) {
+            this.testName = testName;
+        }
+
+        void addError(int index, String message) {
+            add(errors, index, message);
+        }
+
+        void addWarning(int index, String message) {
+            add(warnings, index, message);
+        }
+
+        private void add(TreeMap<Integer, Fitted> messages, int index, String message) {
+            if (messages.containsKey(index) || errors.size() + warnings.size() < maxMessages) {
+                messages.put(index, fit(testName, message));
+                return;
+            }
+
+            // the message which would be the last one in the report gives way
+            TreeMap<Integer, Fitted> evicted = messages == errors && !warnings.isEmpty() ? warnings : messages;
+            if (evicted == messages && (messages.isEmpty() || index > messages.lastKey())) {
+                spill(testName, message);
+            } else {
+                spillFitted(testName, evicted.pollLastEntry().getValue());
+                messages.put(index, fit(testName, message));
+            }
+            spilledCount++;
+        }
+
+        /**
+         * Selects the kept messages which fit into the failure message length, the rest
+         * is written to the overflow file. The spilled messages are counted as omitted.
+         */
+        Failure select() {
+            List<Fitted> messages = new ArrayList<>(errors.values());
+            messages.addAll(warnings.values());
+
+            List<String> selected = new ArrayList<>();
+            int length = 0;
+            int omitted = spilledCount;
+
+            for (Fitted message : messages) {
+                if (selected.size() >= maxMessages || length >= maxFailureLength) {
+                    spillFitted(testName, message);
+                    omitted++;
+                    continue;
+                }
+
+                length += (selected.isEmpty() ? 0 : SEPARATOR.length()) + message.text.length();
+                selected.add(message.text);
+            }
+
+            return new Failure(testName, selected, omitted);
+        }
+
+    }
+
+    /**
+     * Passes the selected messages to the listener and builds the failure message of the test.
+     */
+    String addTo(ILogEventListener events, Failure failure) throws XMLStreamException {
+        StringBuilder builder = new StringBuilder();
+        for (String message : failure.messages) {
+            events.addFailureMessage(failure.testName, message);
+
+            if (builder.length() > 0) {
+                builder.append(SEPARATOR);
+            }
+            builder.append(message);
+        }
+
+        if (builder.length() > maxFailureLength) {
+            builder.setLength(maxFailureLength);
+            builder.append(TRUNCATED_MARKER);
+        }
+
+        if (failure.omitted > 0) {
+            if (builder.length() > 0) {
+                builder.append(SEPARATOR);
+            }
+            if (hasOverflow()) {
+                builder.append(String.format(OMITTED_MESSAGE_WITH_FILE, failure.omitted, overflowFile.getName()));
+            } else {
+                builder.append(String.format(OMITTED_MESSAGE, failure.omitted));
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Truncates a message longer than the limit, the full message is written to the overflow file.
+     */
+    Fitted fit(String testName, String message) {
+        if (message.length() <= maxMessageLength) {
+            return new Fitted(message, false);
+        }
+        spill(testName, message);
+        return new Fitted(message.substring(0, Math.max(0, maxMessageLength - TRUNCATED_MARKER.length())) +
+                TRUNCATED_MARKER, true);
+    }
+
+    /**
+     * Spills a message returned by {@link #fit}. The full text of a truncated message
+     * is already in the overflow file.
+     */
+    void spillFitted(String testName, Fitted message) {
+        if (!message.truncated) {
+            spill(testName, message.text);
+        }
+    }
+
+    /**
+     * Writes a message which does not fit into the failure message to the overflow file.
+     */
+    synchronized void spill(String testName, String message) {
+        if (overflowFile == null || overflowFailed) {
+            return;
+        }
+
+        try {
+            if (overflowWriter == null) {
+                overflowWriter = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(overflowFile), StandardCharsets.UTF_8));
+            }
+
+            String name = String.valueOf(testName);
+            if (!name.equals(lastTestName)) {
+                overflowWriter.write("=== " + name + " ===" + SEPARATOR);
+                lastTestName = name;
+            }
+            overflowWriter.write(message);
+            overflowWriter.write(SEPARATOR);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write the overflow messages to " + overflowFile, e);
+            overflowFailed = true;
+        }
+    }
+
+    synchronized boolean hasOverflow() {
+        return overflowWriter != null && !overflowFailed;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (overflowWriter != null) {
+            overflowWriter.close();
+            overflowWriter = null;
+        }
+    }
+
+}
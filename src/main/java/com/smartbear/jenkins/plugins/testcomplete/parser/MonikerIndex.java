@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the item nodes stored in a root log file. It is built once per root file:
+ * node properties are copied into plain arrays and nodes are looked up by moniker,
+ * so resolving the children of an item does not scan the whole file again.
+ */
+class MonikerIndex {
+
+    private static final String[] NO_VALUES = new String[0];
+
+    private final Node[] nodes;
+    private final String[][] propertyNames;
+    private final String[][] propertyValues;
+    private final String[][] childMonikers;
+
+    private final Map<String, int[]> positionsByMoniker = new HashMap<>();
+    private final Map<Node, Integer> positions = new IdentityHashMap<>();
+
+    MonikerIndex(NodeList nodeList) {
+        List<Node> elements = new ArrayList<>();
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            Node node = nodeList.item(i);
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                elements.add(node);
+            }
+        }
+
+        int count = elements.size();
+        nodes = elements.toArray(new Node[count]);
+        propertyNames = new String[count][];
+        propertyValues = new String[count][];
+        childMonikers = new String[count][];
+
+        for (int i = 0; i < count; i++) {
+            Node node = nodes[i];
+            positions.put(node, i);
+            readProperties(node, i);
+            childMonikers[i] = readChildMonikers(node);
+
+            String moniker = getProperty(i, "moniker");
+            if (moniker != null) {
+                int[] samePositions = positionsByMoniker.get(moniker);
+                if (samePositions == null) {
+                    samePositions = new int[] { i };
+                } else {
+                    int[] extended = new int[samePositions.length + 1];
+                    System.arraycopy(samePositions, 0, extended, 0, samePositions.length);
+                    extended[samePositions.length] = i;
+                    samePositions = extended;
+                }
+                positionsByMoniker.put(moniker, samePositions);
+            }
+        }
+    }
+
+    private void readProperties(Node node, int position) {
+        List<String> names = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+
+        NodeList childNodes = node.getChildNodes();
+        for (int i = 0; i < childNodes.getLength(); i++) {
+            Node childNode = childNodes.item(i);
+            if ("Prp".equals(childNode.getNodeName())) {
+                String name = LogNodeUtils.getTextAttribute(childNode, "name");
+                if (name != null) {
+                    names.add(name);
+                    values.add(LogNodeUtils.getTextAttribute(childNode, "value"));
+                }
+            }
+        }
+
+        propertyNames[position] = names.toArray(NO_VALUES);
+        propertyValues[position] = values.toArray(NO_VALUES);
+    }
+
+    private String[] readChildMonikers(Node node) {
+        Node childNode = LogNodeUtils.findNamedNode(node.getChildNodes(), "children");
+        if (childNode == null) {
+            return NO_VALUES;
+        }
+
+        List<String> result = new ArrayList<>();
+        NodeList childNodeProperties = childNode.getChildNodes();
+        for (int i = 0; i < childNodeProperties.getLength(); i++) {
+            String childKey = LogNodeUtils.getTextAttribute(childNodeProperties.item(i), "value");
+            if (childKey != null && !childKey.isEmpty()) {
+                result.add(childKey);
+            }
+        }
+        return result.toArray(NO_VALUES);
+    }
+
+    private String getProperty(int position, String name) {
+        String[] names = propertyNames[position];
+        for (int i = 0; i < names.length; i++) {
+            if (name.equals(names[i])) {
+                return propertyValues[position][i];
+            }
+        }
+        return null;
+    }
+
+    public String getProperty(Node node, String name) {
+        Integer position = positions.get(node);
+        if (position == null) {
+            return LogNodeUtils.getTextProperty(node, name);
+        }
+        return getProperty(position, name);
+    }
+
+    public List<Node> getChildNodes(Node node) {
+        Integer position = positions.get(node);
+        if (position == null) {
+            return Collections.emptyList();
+        }
+
+        List<Node> result = new ArrayList<>();
+        for (String childMoniker : childMonikers[position]) {
+            int[] childPositions = positionsByMoniker.get(childMoniker);
+            if (childPositions != null) {
+                for (int childPosition : childPositions) {
+                    result.add(nodes[childPosition]);
+                }
+            }
+        }
+        return result;
+    }
+
+}
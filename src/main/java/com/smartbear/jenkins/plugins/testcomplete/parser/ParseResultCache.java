@@ -0,0 +1,406 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import com.smartbear.jenkins.plugins.testcomplete.TcLogInfo;
+import hudson.model.TaskListener;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * On-disk cache of parse results. An entry is keyed by the SHA-256 of the log archive
+ * and the parser settings which affect the result, and holds the log counters, the
+ * JUnit XML report and the outputs written next to it, such as the attachment index.
+ * The cache directory is shared, so a log with the same content is parsed once, no
+ * matter which build or task asks for it. The JUnit XML report is only cached when
+ * it was requested. The number of entries is bounded, the least recently used ones
+ * are removed first.
+ */
+public class ParseResultCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ParseResultCache.class.getName());
+
+    public static final boolean DISABLED = Boolean.getBoolean(ParseResultCache.class.getName() + ".disabled");
+    public static final int MAX_ENTRIES = Math.max(1, Integer.getInteger(ParseResultCache.class.getName() + ".maxEntries", 32));
+
+    // increase when the cached data or the produced reports change
+    private static final int FORMAT_VERSION = 3;
+
+    private static final String INFO_FILE_EXTENSION = ".properties";
+    private static final String REPORT_FILE_EXTENSION = ".xml";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private static final String START_TIME = "startTime";
+    private static final String STOP_TIME = "stopTime";
+    private static final String TEST_COUNT = "testCount";
+    private static final String ERROR_COUNT = "errorCount";
+    private static final String WARNING_COUNT = "warningCount";
+
+    private static class Output {
+
+        private final String extension;
+        private final Function<ParserSettings, File> getter;
+        private final BiConsumer<ParserSettings, File> setter;
+
+        Output(String extension, Function<ParserSettings, File> getter, BiConsumer<ParserSettings, File> setter) {
+            this.extension = extension;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+    }
+
+    // optional outputs of the parse, they are always produced into the cache and copied on request
+    private static final List<Output> OUTPUTS = Arrays.asList(
+            new Output(".attachments.xml", ParserSettings::getAttachmentIndexFile, ParserSettings::setAttachmentIndexFile),
+            new Output(".results", ParserSettings::getResultStoreFile, ParserSettings::setResultStoreFile));
+
+    private final File directory;
+    private final int maxEntries;
+
+    public ParseResultCache(File directory) {
+        this(directory, MAX_ENTRIES);
+    }
+
+    public ParseResultCache(File directory, int maxEntries) {
+        this.directory = directory;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Returns the cached result for the log referenced by the settings, or parses the log
+     * with the parser created by the factory and caches the result.
+     *
+     * @param variant describes everything besides the settings which affects the result,
+     *                such as the parser version and the timezone offset
+     */
+    public TcLogInfo parse(ParserSettings context, String variant,
+                           Function<ParserSettings, ILogParser> parserFactory, TaskListener listener) {
+        String key;
+        try {
+            key = computeKey(context, variant);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Unable to compute the cache key for " + context.getLog(), e);
+            return parserFactory.apply(context).parse(listener);
+        }
+
+        TcLogInfo logInfo = load(key, context);
+        if (logInfo != null) {
+            LOGGER.log(Level.FINE, "Parse result of {0} loaded from the cache", context.getLog());
+            return logInfo;
+        }
+
+        return parseAndStore(key, context, parserFactory, listener);
+    }
+
+    /**
+     * Removes all cached results. The files of the parses which are in progress are kept.
+     */
+    public void clear() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> !name.endsWith(TEMP_FILE_EXTENSION));
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    private String computeKey(ParserSettings context, String variant) throws IOException {
+        String settings = String.join("\n",
+                Integer.toString(FORMAT_VERSION),
+                variant,
+                String.valueOf(context.getSuite()),
+                String.valueOf(context.getProject()),
+                Boolean.toString(context.generateJUnitReports()),
+                Boolean.toString(context.errorOnWarnings()),
+                Integer.toString(context.getMaxMessages()),
+                Integer.toString(context.getMaxMessageLength()),
+                Integer.toString(context.getMaxFailureLength()),
+                Long.toString(context.getMaxEntrySize()));
+
+        MessageDigest digest = createDigest();
+        String settingsHash = toHex(digest.digest(settings.getBytes(StandardCharsets.UTF_8)));
+
+        return hash(context.getLog()) + "-" + settingsHash.substring(0, 16);
+    }
+
+    private static String hash(File file) throws IOException {
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream stream = new FileInputStream(file)) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest createDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    private File getInfoFile(String key) {
+        return new File(directory, key + INFO_FILE_EXTENSION);
+    }
+
+    private File getReportFile(String key) {
+        return new File(directory, key + REPORT_FILE_EXTENSION);
+    }
+
+    private File getOutputFile(String key, Output output) {
+        return new File(directory, key + output.extension);
+    }
+
+    private TcLogInfo load(String key, ParserSettings context) {
+        File infoFile = getInfoFile(key);
+        File reportFile = getReportFile(key);
+
+        if (!infoFile.isFile() || (needsReport(context) && !reportFile.isFile())) {
+            return null;
+        }
+        for (Output output : OUTPUTS) {
+            if (output.getter.apply(context) != null && !getOutputFile(key, output).isFile()) {
+                return null;
+            }
+        }
+
+        try {
+            Properties properties = new Properties();
+            try (InputStream stream = new FileInputStream(infoFile)) {
+                properties.load(stream);
+            }
+
+            TcLogInfo logInfo = new TcLogInfo(
+                    Long.parseLong(properties.getProperty(START_TIME)),
+                    Long.parseLong(properties.getProperty(STOP_TIME)),
+                    Integer.parseInt(properties.getProperty(TEST_COUNT)),
+                    Integer.parseInt(properties.getProperty(ERROR_COUNT)),
+                    Integer.parseInt(properties.getProperty(WARNING_COUNT)));
+
+            if (needsReport(context)) {
+                if (context.getReportFile() != null) {
+                    Files.copy(reportFile.toPath(), context.getReportFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    logInfo.setReportFile(context.getReportFile());
+                }
+                if (context.collectResults()) {
+                    JUnitReport report = new JUnitReport();
+                    XmlReportReader.read(reportFile, report);
+                    logInfo.setJUnitReport(report);
+                }
+            }
+
+            for (Output output : OUTPUTS) {
+                File requestedFile = output.getter.apply(context);
+                if (requestedFile != null) {
+                    Files.copy(getOutputFile(key, output).toPath(), requestedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            // keeps recently used entries from being evicted
+            long now = System.currentTimeMillis();
+            infoFile.setLastModified(now);
+            reportFile.setLastModified(now);
+            for (Output output : OUTPUTS) {
+                getOutputFile(key, output).setLastModified(now);
+            }
+
+            return logInfo;
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Unable to load the cached parse result " + key, e);
+            return null;
+        }
+    }
+
+    // an entry can only serve the results collected from the parse if it holds the report
+    private static boolean needsReport(ParserSettings context) {
+        return context.generateJUnitReports() && (context.getReportFile() != null || context.collectResults());
+    }
+
+    private TcLogInfo parseAndStore(String key, ParserSettings context,
+                                    Function<ParserSettings, ILogParser> parserFactory, TaskListener listener) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return parserFactory.apply(context).parse(listener);
+        }
+
+        // the outputs are produced into the cache and the requested ones are filled from it,
+        // the temporary files are unique as the same log may be parsed by several builds at once
+        String tempPrefix = key + "." + UUID.randomUUID();
+        File tempReportFile = context.getReportFile() != null ?
+                new File(directory, tempPrefix + REPORT_FILE_EXTENSION + TEMP_FILE_EXTENSION) : null;
+
+        ParserSettings cacheContext = new ParserSettings(context.getLog(), context.getSuite(), context.getProject(),
+                context.generateJUnitReports(), context.errorOnWarnings());
+        cacheContext.setParallelism(context.getParallelism());
+        cacheContext.setReportFile(tempReportFile);
+        cacheContext.setCollectResults(context.collectResults());
+        cacheContext.setOverflowFile(context.getOverflowFile());
+        for (Output output : OUTPUTS) {
+            output.setter.accept(cacheContext, new File(directory, tempPrefix + output.extension + TEMP_FILE_EXTENSION));
+        }
+
+        File overflowFile = context.getOverflowFile();
+        if (overflowFile != null) {
+            try {
+                Files.deleteIfExists(overflowFile.toPath());
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Unable to delete " + overflowFile, e);
+            }
+        }
+
+        TcLogInfo logInfo = parserFactory.apply(cacheContext).parse(listener);
+
+        try {
+            if (logInfo == null || (tempReportFile != null && context.generateJUnitReports() && logInfo.getReportFile() == null)) {
+                // failures are not cached
+                return logInfo;
+            }
+
+            if (overflowFile != null && overflowFile.exists()) {
+                // the overflow messages are not cached, the log is parsed again next time
+                if (tempReportFile != null && tempReportFile.isFile()) {
+                    Files.copy(tempReportFile.toPath(), context.getReportFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    logInfo.setReportFile(context.getReportFile());
+                } else {
+                    logInfo.setReportFile(null);
+                }
+                for (Output output : OUTPUTS) {
+                    File tempFile = output.getter.apply(cacheContext);
+                    File requestedFile = output.getter.apply(context);
+                    if (requestedFile != null && tempFile.isFile()) {
+                        Files.copy(tempFile.toPath(), requestedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                return logInfo;
+            }
+
+            if (tempReportFile != null && context.generateJUnitReports()) {
+                File reportFile = getReportFile(key);
+                Files.move(tempReportFile.toPath(), reportFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.copy(reportFile.toPath(), context.getReportFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+                logInfo.setReportFile(context.getReportFile());
+            }
+
+            for (Output output : OUTPUTS) {
+                File tempFile = output.getter.apply(cacheContext);
+                if (!tempFile.isFile()) {
+                    continue;
+                }
+
+                File outputFile = getOutputFile(key, output);
+                Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+                File requestedFile = output.getter.apply(context);
+                if (requestedFile != null) {
+                    Files.copy(outputFile.toPath(), requestedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            storeInfo(key, tempPrefix, logInfo);
+            evict();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Unable to cache the parse result " + key, e);
+        } finally {
+            try {
+                if (tempReportFile != null) {
+                    Files.deleteIfExists(tempReportFile.toPath());
+                }
+                for (Output output : OUTPUTS) {
+                    Files.deleteIfExists(output.getter.apply(cacheContext).toPath());
+                }
+            } catch (IOException e) {
+                // Do nothing
+            }
+        }
+
+        return logInfo;
+    }
+
+    private void storeInfo(String key, String tempPrefix, TcLogInfo logInfo) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(START_TIME, Long.toString(logInfo.getStartTime()));
+        properties.setProperty(STOP_TIME, Long.toString(logInfo.getStopTime()));
+        properties.setProperty(TEST_COUNT, Integer.toString(logInfo.getTestCount()));
+        properties.setProperty(ERROR_COUNT, Integer.toString(logInfo.getErrorCount()));
+        properties.setProperty(WARNING_COUNT, Integer.toString(logInfo.getWarningCount()));
+
+        // the info file is written last and atomically, it marks the entry as complete
+        File tempInfoFile = new File(directory, tempPrefix + INFO_FILE_EXTENSION + TEMP_FILE_EXTENSION);
+        try (OutputStream stream = new FileOutputStream(tempInfoFile)) {
+            properties.store(stream, null);
+        }
+        Files.move(tempInfoFile.toPath(), getInfoFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void evict() throws IOException {
+        File[] infoFiles = directory.listFiles((dir, name) -> name.endsWith(INFO_FILE_EXTENSION));
+        if (infoFiles == null || infoFiles.length <= maxEntries) {
+            return;
+        }
+
+        Arrays.sort(infoFiles, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < infoFiles.length - maxEntries; i++) {
+            String name = infoFiles[i].getName();
+            String key = name.substring(0, name.length() - INFO_FILE_EXTENSION.length());
+            Files.deleteIfExists(infoFiles[i].toPath());
+            Files.deleteIfExists(getReportFile(key).toPath());
+            for (Output output : OUTPUTS) {
+                Files.deleteIfExists(getOutputFile(key, output).toPath());
+            }
+        }
+    }
+
+}
@@ -25,17 +25,42 @@
 package com.smartbear.jenkins.plugins.testcomplete.parser;
 
 import java.io.File;
+import java.io.Serializable;
 
 /**
  * @author Igor Filin
  */
-public class ParserSettings {
+public class ParserSettings implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // limits which keep the memory used by a parse bounded, see MessageBudget
+    public static final int DEFAULT_MAX_MESSAGES =
+            Math.max(1, Integer.getInteger(ParserSettings.class.getName() + ".maxMessages", 100));
+    public static final int DEFAULT_MAX_MESSAGE_LENGTH =
+            Math.max(1, Integer.getInteger(ParserSettings.class.getName() + ".maxMessageLength", 8 * 1024));
+    public static final int DEFAULT_MAX_FAILURE_LENGTH =
+            Math.max(1, Integer.getInteger(ParserSettings.class.getName() + ".maxFailureLength", 64 * 1024));
+    public static final long DEFAULT_MAX_ENTRY_SIZE =
+            Math.max(1, Long.getLong(ParserSettings.class.getName() + ".maxEntrySize", 64L * 1024 * 1024));
 
     private final File log;
     private final String suite;
     private final String project;
     private final boolean generateJUnitReports;
     private boolean errorOnWarnings;
+    private int parallelism = 1;
+    private File reportFile;
+    private boolean collectResults;
+    private File overflowFile;
+    private File attachmentIndexFile;
+    private File resultStoreFile;
+
+    // the defaults are taken on the controller and sent to the agent along with the settings
+    private final int maxMessages = DEFAULT_MAX_MESSAGES;
+    private final int maxMessageLength = DEFAULT_MAX_MESSAGE_LENGTH;
+    private final int maxFailureLength = DEFAULT_MAX_FAILURE_LENGTH;
+    private final long maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
 
     public ParserSettings(File log, String suite, String project, boolean generateJUnitReports, boolean errorOnWarnings) {
         this.log = log;
@@ -65,4 +90,68 @@ public class ParserSettings {
         return errorOnWarnings;
     }
 
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public File getReportFile() {
+        return reportFile;
+    }
+
+    public void setReportFile(File reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    public boolean collectResults() {
+        return collectResults;
+    }
+
+    public void setCollectResults(boolean collectResults) {
+        this.collectResults = collectResults;
+    }
+
+    public File getOverflowFile() {
+        return overflowFile;
+    }
+
+    public void setOverflowFile(File overflowFile) {
+        this.overflowFile = overflowFile;
+    }
+
+    public File getAttachmentIndexFile() {
+        return attachmentIndexFile;
+    }
+
+    public void setAttachmentIndexFile(File attachmentIndexFile) {
+        this.attachmentIndexFile = attachmentIndexFile;
+    }
+
+    public File getResultStoreFile() {
+        return resultStoreFile;
+    }
+
+    public void setResultStoreFile(File resultStoreFile) {
+        this.resultStoreFile = resultStoreFile;
+    }
+
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    public int getMaxMessageLength() {
+        return maxMessageLength;
+    }
+
+    public int getMaxFailureLength() {
+        return maxFailureLength;
+    }
+
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
 }
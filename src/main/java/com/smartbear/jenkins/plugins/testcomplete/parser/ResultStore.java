@@ -0,0 +1,285 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only view of the per-test results of a report, read from the compact results file
+ * written by {@link ResultStoreWriter}. The file is read into a single buffer and results
+ * are read by index straight from it, so thousands of tests can be scanned without loading
+ * the XML report or creating an object per test. Strings are only decoded when requested.
+ * No file handle is kept open, so the build can be deleted while the store is in use.
+ *
+ * The file layout (big-endian) is a header of the magic number, the version, the test
+ * count and the string count, followed by the test durations in milliseconds as long[],
+ * the name, class name and packed status arrays as int[], the string offsets as int[]
+ * and the UTF-8 data of the string table. A packed status holds the {@link #PASSED},
+ * {@link #FAILED} or {@link #SKIPPED} status in the low bits and the index of the
+ * failure message in the string table plus one in the rest.
+ */
+public class ResultStore {
+
+    public static final int PASSED = 0;
+    public static final int FAILED = 1;
+    public static final int SKIPPED = 2;
+
+    public static final long MAX_FILE_SIZE =
+            Math.max(1, Long.getLong(ResultStore.class.getName() + ".maxFileSize", 64L * 1024 * 1024));
+
+    static final int MAGIC = 0x54435253; // "TCRS"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int STATUS_BITS = 2;
+    static final int STATUS_MASK = (1 << STATUS_BITS) - 1;
+
+    private final ByteBuffer buffer;
+    private final int testCount;
+    private final int stringCount;
+
+    private final int durationsOffset;
+    private final int namesOffset;
+    private final int classNamesOffset;
+    private final int statusesOffset;
+    private final int stringOffsetsOffset;
+    private final int stringDataOffset;
+
+    private ResultStore(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unexpected results file format");
+        }
+
+        testCount = buffer.getInt(8);
+        stringCount = buffer.getInt(12);
+
+        long durationsEnd = HEADER_SIZE + 8L * testCount;
+        long stringOffsetsEnd = durationsEnd + 12L * testCount + 4L * (stringCount + 1);
+        if (testCount < 0 || stringCount < 0 || stringOffsetsEnd > buffer.limit()) {
+            throw new IOException("Unexpected results file format");
+        }
+
+        durationsOffset = HEADER_SIZE;
+        namesOffset = (int) durationsEnd;
+        classNamesOffset = namesOffset + 4 * testCount;
+        statusesOffset = classNamesOffset + 4 * testCount;
+        stringOffsetsOffset = statusesOffset + 4 * testCount;
+        stringDataOffset = (int) stringOffsetsEnd;
+
+        if (stringDataOffset + (long) getStringOffset(stringCount) > buffer.limit()) {
+            throw new IOException("Unexpected results file format");
+        }
+    }
+
+    /**
+     * Reads the results file, files larger than {@link #MAX_FILE_SIZE} are rejected.
+     */
+    public static ResultStore open(File file) throws IOException {
+        long size = file.length();
+        if (size > MAX_FILE_SIZE) {
+            throw new IOException("The results file " + file + " is too large (" + size + " bytes)");
+        }
+        return new ResultStore(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    /**
+     * Describes a failed test, see {@link #getFailures(int)}.
+     */
+    public static class Failure {
+
+        private final String className;
+        private final String name;
+        private final String message;
+
+        Failure(String className, String name, String message) {
+            this.className = className;
+            this.name = name;
+            this.message = message;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the failure message, or null if it has not been stored.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+    }
+
+    public int size() {
+        return testCount;
+    }
+
+    public String getName(int test) {
+        return getString(buffer.getInt(namesOffset + 4 * checkIndex(test)));
+    }
+
+    public String getClassName(int test) {
+        return getString(buffer.getInt(classNamesOffset + 4 * checkIndex(test)));
+    }
+
+    /**
+     * Returns the duration of the test in milliseconds.
+     */
+    public long getDuration(int test) {
+        return buffer.getLong(durationsOffset + 8 * checkIndex(test));
+    }
+
+    public int getStatus(int test) {
+        return getPackedStatus(test) & STATUS_MASK;
+    }
+
+    public boolean isFailed(int test) {
+        return getStatus(test) == FAILED;
+    }
+
+    public boolean isSkipped(int test) {
+        return getStatus(test) == SKIPPED;
+    }
+
+    /**
+     * Returns the failure message of the test, or null if the test has not failed.
+     */
+    public String getFailureMessage(int test) {
+        int failure = getPackedStatus(test) >>> STATUS_BITS;
+        return failure == 0 ? null : getString(failure - 1);
+    }
+
+    /**
+     * Returns the number of tests with the given status.
+     */
+    public int count(int status) {
+        int result = 0;
+        for (int i = 0; i < testCount; i++) {
+            if ((buffer.getInt(statusesOffset + 4 * i) & STATUS_MASK) == status) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first failed tests in the order they were reported, at most limit of them.
+     */
+    public List<Failure> getFailures(int limit) {
+        List<Failure> result = new ArrayList<>();
+        for (int i = 0; i < testCount && result.size() < limit; i++) {
+            if (isFailed(i)) {
+                result.add(new Failure(getClassName(i), getName(i), getFailureMessage(i)));
+            }
+        }
+        return result;
+    }
+
+    public long getTotalDuration() {
+        long result = 0;
+        for (int i = 0; i < testCount; i++) {
+            result += buffer.getLong(durationsOffset + 8 * i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the first test with the given name and class name, or -1.
+     * The names are compared as encoded bytes, nothing is decoded.
+     */
+    public int indexOf(String name, String className) {
+        int nameIndex = findString(name);
+        int classNameIndex = findString(className);
+        if (nameIndex < 0 || classNameIndex < 0) {
+            return -1;
+        }
+
+        for (int i = 0; i < testCount; i++) {
+            if (buffer.getInt(namesOffset + 4 * i) == nameIndex &&
+                    buffer.getInt(classNamesOffset + 4 * i) == classNameIndex) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int getPackedStatus(int test) {
+        return buffer.getInt(statusesOffset + 4 * checkIndex(test));
+    }
+
+    private int checkIndex(int test) {
+        if (test < 0 || test >= testCount) {
+            throw new IndexOutOfBoundsException("Test " + test + " of " + testCount);
+        }
+        return test;
+    }
+
+    private int getStringOffset(int index) {
+        return buffer.getInt(stringOffsetsOffset + 4 * index);
+    }
+
+    private String getString(int index) {
+        int start = getStringOffset(index);
+        byte[] bytes = new byte[getStringOffset(index + 1) - start];
+
+        // the shared buffer is not repositioned, so the store can be read by several threads
+        ByteBuffer data = buffer.duplicate();
+        data.position(stringDataOffset + start);
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // strings are interned by the writer, so each value is stored once
+    private int findString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < stringCount; i++) {
+            int start = getStringOffset(i);
+            if (getStringOffset(i + 1) - start != bytes.length) {
+                continue;
+            }
+
+            boolean equal = true;
+            for (int j = 0; j < bytes.length && equal; j++) {
+                equal = buffer.get(stringDataOffset + start + j) == bytes[j];
+            }
+            if (equal) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
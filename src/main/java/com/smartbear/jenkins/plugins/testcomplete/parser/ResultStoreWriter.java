@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the test results of a log walk into primitive arrays and writes them
+ * as the compact results file read by {@link ResultStore}.
+ */
+class ResultStoreWriter implements ILogEventListener {
+
+    private final File file;
+
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    private int testCount = 0;
+    private long[] durations = new long[16];
+    private int[] names = new int[16];
+    private int[] classNames = new int[16];
+    private int[] statuses = new int[16];
+
+    ResultStoreWriter(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void startReport() {
+        stringIndexes.clear();
+        strings.clear();
+        testCount = 0;
+    }
+
+    @Override
+    public void addTestCase(String name, String className, float time, boolean skipped, String failureMessage) {
+        if (testCount == durations.length) {
+            int capacity = testCount * 2;
+            durations = Arrays.copyOf(durations, capacity);
+            names = Arrays.copyOf(names, capacity);
+            classNames = Arrays.copyOf(classNames, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+        }
+
+        int status = skipped ? ResultStore.SKIPPED : (failureMessage != null ? ResultStore.FAILED : ResultStore.PASSED);
+        int failure = !skipped && failureMessage != null ? intern(failureMessage) + 1 : 0;
+
+        durations[testCount] = Math.round(time * 1000d);
+        names[testCount] = intern(name);
+        classNames[testCount] = intern(className);
+        statuses[testCount] = (failure << ResultStore.STATUS_BITS) | status;
+        testCount++;
+    }
+
+    @Override
+    public void endReport() throws XMLStreamException {
+        try {
+            write();
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    private int intern(String value) {
+        String key = value != null ? value : "";
+        Integer index = stringIndexes.get(key);
+        if (index == null) {
+            index = strings.size();
+            stringIndexes.put(key, index);
+            strings.add(key);
+        }
+        return index;
+    }
+
+    private void write() throws IOException {
+        List<byte[]> stringData = new ArrayList<>(strings.size());
+        for (String string : strings) {
+            stringData.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+
+        boolean written = false;
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            stream.writeInt(ResultStore.MAGIC);
+            stream.writeInt(ResultStore.VERSION);
+            stream.writeInt(testCount);
+            stream.writeInt(strings.size());
+
+            for (int i = 0; i < testCount; i++) {
+                stream.writeLong(durations[i]);
+            }
+            for (int i = 0; i < testCount; i++) {
+                stream.writeInt(names[i]);
+            }
+            for (int i = 0; i < testCount; i++) {
+                stream.writeInt(classNames[i]);
+            }
+            for (int i = 0; i < testCount; i++) {
+                stream.writeInt(statuses[i]);
+            }
+
+            int offset = 0;
+            stream.writeInt(offset);
+            for (byte[] bytes : stringData) {
+                offset += bytes.length;
+                stream.writeInt(offset);
+            }
+            for (byte[] bytes : stringData) {
+                stream.write(bytes);
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Replays a JUnit XML report written by {@link XmlReportWriter} as the report events of a log.
+ */
+class XmlReportReader {
+
+    static void read(File file, ILogEventListener events) throws IOException, XMLStreamException {
+        XMLStreamReader reader = null;
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            reader = LogStreamUtils.createInputFactory().createXMLStreamReader(stream);
+
+            if (!LogStreamUtils.nextChildElement(reader) || !"testsuites".equals(reader.getLocalName())) {
+                throw new ParsingException("Unexpected report format");
+            }
+
+            events.startReport();
+            while (LogStreamUtils.nextChildElement(reader)) {
+                if ("testsuite".equals(reader.getLocalName())) {
+                    readSuite(reader, events);
+                } else {
+                    LogStreamUtils.skipElement(reader);
+                }
+            }
+            events.endReport();
+        } finally {
+            LogStreamUtils.closeQuietly(reader);
+        }
+    }
+
+    private static void readSuite(XMLStreamReader reader, ILogEventListener events) throws XMLStreamException {
+        events.startSuite(LogStreamUtils.getAttribute(reader, "name"),
+                readTime(reader),
+                LogStreamUtils.getAttribute(reader, "failures"),
+                LogStreamUtils.getAttribute(reader, "tests"),
+                LogStreamUtils.getAttribute(reader, "timestamp"));
+
+        while (LogStreamUtils.nextChildElement(reader)) {
+            if ("testcase".equals(reader.getLocalName())) {
+                readTestCase(reader, events);
+            } else {
+                LogStreamUtils.skipElement(reader);
+            }
+        }
+
+        events.endSuite();
+    }
+
+    private static void readTestCase(XMLStreamReader reader, ILogEventListener events) throws XMLStreamException {
+        String name = LogStreamUtils.getAttribute(reader, "name");
+        String className = LogStreamUtils.getAttribute(reader, "classname");
+        float time = readTime(reader);
+
+        boolean skipped = false;
+        String failureMessage = null;
+
+        while (LogStreamUtils.nextChildElement(reader)) {
+            if ("skipped".equals(reader.getLocalName())) {
+                skipped = true;
+            } else if ("failure".equals(reader.getLocalName())) {
+                failureMessage = LogStreamUtils.getAttribute(reader, "message");
+            }
+            LogStreamUtils.skipElement(reader);
+        }
+
+        events.addTestCase(name, className, time, skipped, failureMessage);
+    }
+
+    private static float readTime(XMLStreamReader reader) {
+        try {
+            return Float.parseFloat(LogStreamUtils.getAttribute(reader, "time"));
+        } catch (NumberFormatException | NullPointerException e) {
+            return 0;
+        }
+    }
+
+}
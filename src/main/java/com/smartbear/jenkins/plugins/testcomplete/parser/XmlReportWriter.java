@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes the results as a JUnit XML report.
+ */
+class XmlReportWriter implements ILogEventListener {
+
+    private final XMLStreamWriter writer;
+
+    XmlReportWriter(XMLStreamWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void startReport() throws XMLStreamException {
+        writer.writeStartDocument("utf-8", "1.0");
+        writer.writeStartElement("testsuites");
+    }
+
+    @Override
+    public void startSuite(String name, float time, String failures, String tests, String timestamp) throws XMLStreamException {
+        writer.writeStartElement("testsuite");
+        writer.writeAttribute("name", name);
+        writer.writeAttribute("time", Double.toString(time));
+
+        if (failures != null) {
+            writer.writeAttribute("failures", failures);
+        }
+        if (tests != null) {
+            writer.writeAttribute("tests", tests);
+        }
+        if (timestamp != null) {
+            writer.writeAttribute("timestamp", timestamp);
+        }
+    }
+
+    @Override
+    public void addTestCase(String name, String className, float time, boolean skipped, String failureMessage) throws XMLStreamException {
+        writer.writeStartElement("testcase");
+        writer.writeAttribute("name", name);
+        writer.writeAttribute("classname", className);
+        writer.writeAttribute("time", Double.toString(time));
+
+        if (skipped) {
+            writer.writeStartElement("skipped");
+            writer.writeEndElement(); //skipped
+        } else if (failureMessage != null) {
+            writer.writeStartElement("failure");
+            writer.writeAttribute("message", failureMessage);
+            writer.writeEndElement(); //failure
+        }
+
+        writer.writeEndElement(); //testcase
+    }
+
+    @Override
+    public void endSuite() throws XMLStreamException {
+        writer.writeEndElement(); //testsuite
+    }
+
+    @Override
+    public void endReport() throws XMLStreamException {
+        writer.writeEndElement(); //testsuites
+        writer.writeEndDocument();
+    }
+
+}
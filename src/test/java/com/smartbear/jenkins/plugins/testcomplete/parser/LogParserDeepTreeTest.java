@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, SmartBear Software
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.smartbear.jenkins.plugins.testcomplete.parser;
+
+import com.smartbear.jenkins.plugins.testcomplete.TcLogInfo;
+import hudson.model.TaskListener;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Parses synthetic legacy logs whose project tree is a full binary tree of test groups.
+ */
+public class LogParserDeepTreeTest {
+
+    private static final int DEEP_DEPTH = 9;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reportsEveryLeafTest() throws Exception {
+        File log = SyntheticLog.write(folder.newFile("deep.tclogx"), DEEP_DEPTH);
+        File report = folder.newFile("deep.xml");
+
+        TcLogInfo logInfo = parse(log, report);
+        assertNotNull(logInfo);
+
+        String xml = new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8);
+        assertEquals(1 << DEEP_DEPTH, countOccurrences(xml, "<testcase "));
+    }
+
+    @Test
+    public void classifiesEveryItemOnce() throws Exception {
+        File log = SyntheticLog.write(folder.newFile("deep.tclogx"), DEEP_DEPTH);
+
+        ParserSettings settings = new ParserSettings(log, "Suite", "Project", true, false);
+        try (LogParseSession session = new LogParseSession(settings)) {
+            NodeList rootNodes = session.getRootDocumentNode(SyntheticLog.ROOT_ENTRY_NAME).getChildNodes();
+            Node rootOwnerNode = LogNodeUtils.findRootOwnerNode(rootNodes);
+            assertNotNull(rootOwnerNode);
+
+            AtomicInteger classified = new AtomicInteger();
+            ItemClassifier classifier = new ItemClassifier(session, new MonikerIndex(rootNodes)) {
+                @Override
+                boolean classifyProjectItem(Node node) {
+                    classified.incrementAndGet();
+                    return super.classifyProjectItem(node);
+                }
+            };
+
+            List<LogNodeUtils.Pair<String, Node>> items = LogNodeUtils.findChildNodesRecursively(classifier, rootOwnerNode, "");
+            assertEquals(1 << DEEP_DEPTH, items.size());
+
+            // every item except the project itself: the groups, the tests and their logs
+            int itemCount = (1 << DEEP_DEPTH) - 2 + 2 * (1 << DEEP_DEPTH);
+            assertEquals(itemCount, classified.get());
+        }
+    }
+
+    private static TcLogInfo parse(File log, File report) {
+        ParserSettings settings = new ParserSettings(log, "Suite", "Project", true, false);
+        settings.setReportFile(report);
+        return new LogParser(settings, 0).parse(TaskListener.NULL);
+    }
+
+    private static int countOccurrences(String text, String pattern) {
+        int count = 0;
+        for (int i = text.indexOf(pattern); i >= 0; i = text.indexOf(pattern, i + pattern.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Writes a legacy log with a single project. Every group has two sub-items,
+     * the leaves are test items that own a log item.
+     */
+    private static class SyntheticLog {
+
+        private static final String ROOT_ENTRY_NAME = "root.tcRoot";
+        private static final String PROJECT_KEY = "{Project}";
+
+        private final ZipOutputStream zip;
+        private final StringBuilder items = new StringBuilder();
+        private int itemCount = 0;
+
+        private SyntheticLog(ZipOutputStream zip) {
+            this.zip = zip;
+        }
+
+        static File write(File file, int depth) throws IOException {
+            try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+                SyntheticLog log = new SyntheticLog(zip);
+
+                List<String> groups = new ArrayList<>();
+                groups.add(log.group("{Root}", depth - 1, "0"));
+                groups.add(log.group("{Root}", depth - 1, "1"));
+
+                log.entry("project.xml", "<Node name=\"summary\"><Prp name=\"test\" value=\"Project\"/>" +
+                        "<Prp name=\"start date\" value=\"43000.5\"/><Prp name=\"stop date\" value=\"43000.6\"/>" +
+                        "<Node name=\"total\"><Prp name=\"total (sum)\" value=\"" + (1 << depth) + "\"/></Node>" +
+                        "<Node name=\"failed\"><Prp name=\"total (sum)\" value=\"0\"/></Node></Node>");
+
+                String root = item("item 0", "{Root}", "", "Project", "project.xml", groups);
+                log.entry(ROOT_ENTRY_NAME, root + log.items);
+
+                log.entry("Description.tcLog", "<Prp name=\"start time\" value=\"43000.5\"/>" +
+                        "<Prp name=\"stop time\" value=\"43000.6\"/><Prp name=\"error count\" value=\"0\"/>" +
+                        "<Prp name=\"warning count\" value=\"0\"/><Prp name=\"test count\" value=\"" + (1 << depth) + "\"/>" +
+                        "<Prp name=\"root file name\" value=\"" + ROOT_ENTRY_NAME + "\"/>");
+            }
+            return file;
+        }
+
+        private String group(String owner, int depth, String path) throws IOException {
+            String moniker = "{Group" + path + "}";
+            List<String> children = new ArrayList<>();
+
+            if (depth == 0) {
+                String logMoniker = "{Log" + path + "}";
+                entry("test" + path + ".xml", "<Node name=\"log data\"><Node name=\"row0\">" +
+                        "<Prp name=\"start time\" value=\"43000.5\"/><Prp name=\"end time\" value=\"43000.50001\"/>" +
+                        "</Node></Node>");
+                entry("log" + path + ".xml", "<Node name=\"status\"/>");
+
+                addItem(logMoniker, moniker, "Log", "log" + path + ".xml", new ArrayList<>());
+                children.add(logMoniker);
+                addItem(moniker, owner, "Test" + path, "test" + path + ".xml", children);
+                return moniker;
+            }
+
+            children.add(group(moniker, depth - 1, path + "0"));
+            children.add(group(moniker, depth - 1, path + "1"));
+
+            entry("group" + path + ".xml", "<Node name=\"summary\"><Prp name=\"test\" value=\"Group" + path + "\"/></Node>");
+            addItem(moniker, owner, "Group" + path, "group" + path + ".xml", children);
+            return moniker;
+        }
+
+        private void addItem(String moniker, String owner, String name, String fileName, List<String> children) {
+            items.append(item("item " + (++itemCount), moniker, owner, name, fileName, children));
+        }
+
+        private static String item(String itemName, String moniker, String owner, String name, String fileName,
+                                   List<String> children) {
+            StringBuilder item = new StringBuilder("<Node name=\"").append(itemName).append("\">")
+                    .append("<Prp name=\"name\" value=\"").append(name).append("\"/>")
+                    .append("<Prp name=\"moniker\" value=\"").append(moniker).append("\"/>")
+                    .append("<Prp name=\"ownermoniker\" value=\"").append(owner).append("\"/>")
+                    .append("<Prp name=\"filename\" value=\"").append(fileName).append("\"/>")
+                    .append("<Prp name=\"status\" value=\"0\"/>")
+                    .append("<Prp name=\"projectkey\" value=\"").append(PROJECT_KEY).append("\"/>")
+                    .append("<Node name=\"children\">");
+            for (int i = 0; i < children.size(); i++) {
+                item.append("<Prp name=\"child").append(i).append("\" value=\"").append(children.get(i)).append("\"/>");
+            }
+            return item.append("</Node></Node>").toString();
+        }
+
+        private void entry(String name, String body) throws IOException {
+            zip.putNextEntry(new ZipEntry(name));
+            zip.write(("<Nodes version=\"1\"><Node name=\"root\">" + body + "</Node></Nodes>").getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+
+    }
+
+}